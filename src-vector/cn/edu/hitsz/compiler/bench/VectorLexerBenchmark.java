@@ -0,0 +1,90 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexerDFA;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.lexer.VectorScanner;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 比较标量自动机扫描与向量化扫描的吞吐量
+ * <br>
+ * 把输入文件 (默认为标识符较多的 data/in/reg-alloc.txt) 重复拼接成约 targetMB 大小的直接缓冲区, 两种扫描器交替运行若干轮,
+ * 输出每轮的耗时与吞吐量, 并核对两者识别出的词素数目与类型码点之和一致. 后一半轮次 (前一半视为预热) 的加速比的中位数低于 1 时,
+ * 向量化扫描没有意义, 以异常结束. 与向量化扫描器一同位于 src-vector 中,
+ * 按其中说明的方式编译后, 在项目根目录下以 {@code --add-modules jdk.incubator.vector} 运行:
+ * <pre>
+ *     java --add-modules jdk.incubator.vector -cp out cn.edu.hitsz.compiler.bench.VectorLexerBenchmark [path] [targetMB] [rounds]
+ * </pre>
+ */
+public class VectorLexerBenchmark {
+    public static void main(String[] args) {
+        final var path = args.length > 0 ? args[0] : "data/in/reg-alloc.txt";
+        final var targetMB = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        final var rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        TokenKind.loadTokenKinds();
+        final var dfa = LexerDFA.getInstance();
+        final var vector = VectorScanner.getInstance();
+
+        final var source = repeat(FileUtils.readFile(path).getBytes(StandardCharsets.US_ASCII), targetMB * 1024 * 1024);
+        final var length = source.limit();
+        System.out.printf("input: %s repeated to %d bytes%n", path, length);
+
+        final var speedups = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            final var scalar = new Counter();
+            var start = System.nanoTime();
+            dfa.scan(source, 0, length, true, scalar::accept);
+            final var scalarNanos = System.nanoTime() - start;
+
+            final var simd = new Counter();
+            start = System.nanoTime();
+            vector.scan(source, 0, length, true, simd::accept);
+            final var simdNanos = System.nanoTime() - start;
+
+            if (scalar.count != simd.count || scalar.checksum != simd.checksum) {
+                throw new RuntimeException("Scanners disagree: %d/%d tokens".formatted(scalar.count, simd.count));
+            }
+
+            speedups[round] = (double) scalarNanos / simdNanos;
+            System.out.printf("round %2d: %d tokens, scalar %.1f MB/s, vector %.1f MB/s, speedup %.2fx%n",
+                round, scalar.count, throughput(length, scalarNanos), throughput(length, simdNanos), speedups[round]);
+        }
+
+        final var measured = Arrays.copyOfRange(speedups, rounds / 2, rounds);
+        Arrays.sort(measured);
+        final var median = measured[measured.length / 2];
+        System.out.printf("median speedup of the last %d rounds: %.2fx%n", measured.length, median);
+        if (median < 1.0) {
+            throw new RuntimeException("Vector scanner is slower than the scalar DFA: %.2fx".formatted(median));
+        }
+    }
+
+    private static class Counter {
+        private long count = 0;
+        private long checksum = 0;
+
+        private void accept(TokenKind kind, int begin, int end) {
+            count++;
+            checksum += kind.getCode() * 31L + end - begin;
+        }
+    }
+
+    private static ByteBuffer repeat(byte[] content, int targetSize) {
+        final var copies = Math.max(1, targetSize / (content.length + 1));
+        final var buffer = ByteBuffer.allocateDirect(copies * (content.length + 1));
+        for (int i = 0; i < copies; i++) {
+            // 每份之间以换行分隔, 避免首尾的词素粘连
+            buffer.put(content).put((byte) '\n');
+        }
+        return buffer.flip();
+    }
+
+    private static double throughput(int bytes, long nanos) {
+        return bytes / (nanos / 1e9) / (1024 * 1024);
+    }
+}
@@ -0,0 +1,286 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 使用 Vector API (jdk.incubator.vector) 加速的字节扫描
+ * <br>
+ * {@link LexerDFA} 每读入一个字符都要查一次字符类与转移表. 而源程序中的大部分字节属于三种 "游程": 空白符, 标识符 (字母串)
+ * 与整数常量 (数字串), 这三种游程的结束位置只取决于字节本身的类别, 与自动机状态无关. 因此该类由游程的第一个字节确定其类别,
+ * 游程的前 {@code SCALAR_PREFIX} 个字节按类别表逐个检查; 游程更长时 (长标识符, 缩进等) 才从该处起一次读入一整个向量
+ * (32 或 64 字节), 用向量比较求出类别掩码, 掩码取反后的 {@code firstTrue} 即为游程的结束位置. 大多数游程只有一两个字节,
+ * 为每个游程都读入向量的开销远大于逐字节检查.
+ * <ul>
+ *     <li>空白符游程整段跳过</li>
+ *     <li>数字游程即为一个整数常量</li>
+ *     <li>字母游程即为一个标识符或关键字: 读入第一个字母后自动机已处于一般标识符的状态, 或游程长于任何关键字时必为标识符,
+ *     否则在自动机上走完这几个字母得到类型</li>
+ *     <li>自动机读入后即不能再延长的单个字节 (如各个标点) 直接查表得到类型</li>
+ *     <li>其余字节 (非 ASCII 字节等) 以及后面紧跟非 ASCII 字节的字母游程仍按自动机逐字节识别</li>
+ * </ul>
+ * 游程结束时读到的下一个字节直接用于下一个词素, 不再重复读取. 识别结果与 {@link LexerDFA#scan(ByteBuffer, int, int, boolean, TokenSink)} 完全相同.
+ * <br>
+ * 该类位于单独的源码目录 src-vector 中, 默认的构建只编译 src, 不需要该模块. 需要向量化扫描时在编译 src 之后另行编译:
+ * <pre>
+ *     javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp out -d out $(find src-vector -name '*.java')
+ * </pre>
+ * 运行时同样需要 {@code --add-modules jdk.incubator.vector}. {@link LexicalAnalyzer} 按类名反射加载该类,
+ * 未编译或模块不可用时回退到标量扫描, 见 {@link cn.edu.hitsz.compiler.utils.CompilerOptions#SIMD_LEXER}.
+ */
+public final class VectorScanner implements LexemeScanner {
+    private static VectorScanner instance = null;
+
+    /**
+     * 获得基于 {@link LexerDFA#getInstance()} 的扫描器, 保证在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @return 扫描器
+     */
+    public static synchronized VectorScanner getInstance() {
+        if (instance == null) {
+            instance = new VectorScanner(LexerDFA.getInstance());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param dfa 词法自动机, 用于识别关键字与标点
+     */
+    public VectorScanner(LexerDFA dfa) {
+        this.dfa = dfa;
+        this.identifierKind = dfa.identifierKind();
+        this.intConstKind = dfa.intConstKind();
+
+        // 长于任何关键字的字母串所到达的状态; 自动机是最小化的, 到达该状态之后再读入字母都只能是标识符
+        int state = LexerDFA.START;
+        for (int i = 0; i <= dfa.maxKeywordLength(); i++) {
+            state = dfa.next(state, dfa.classOf('a'));
+        }
+        this.identifierState = state;
+        for (int c = 0; c < afterFirstByte.length; c++) {
+            afterFirstByte[c] = dfa.next(LexerDFA.START, dfa.classOf(c));
+            singleByteKinds[c] = isFinal(afterFirstByte[c]) ? dfa.acceptKind(afterFirstByte[c]) : null;
+        }
+    }
+
+    /**
+     * @return 该状态是否为接受状态, 且读入任何字符都进入死状态
+     */
+    private boolean isFinal(int state) {
+        if (dfa.acceptKind(state) == null) {
+            return false;
+        }
+        for (int charClass = 0; charClass < dfa.classCount(); charClass++) {
+            if (dfa.next(state, charClass) != LexerDFA.DEAD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 字符输入没有向量化的必要, 直接交给自动机
+     */
+    @Override
+    public int scan(CharSequence text, int begin, int end, boolean endOfInput, TokenSink sink) {
+        return dfa.scan(text, begin, end, endOfInput, sink);
+    }
+
+    /**
+     * 与 {@link LexerDFA#scan(ByteBuffer, int, int, boolean, TokenSink)} 语义相同的扫描
+     *
+     * @param buffer     源字节
+     * @param begin      起始下标
+     * @param end        结束下标
+     * @param endOfInput end 是否就是输入的末尾
+     * @param sink       词素回调
+     * @return 扫描停止的位置
+     */
+    @Override
+    public int scan(ByteBuffer buffer, int begin, int end, boolean endOfInput, TokenSink sink) {
+        int pos = begin;
+        // pos 处的字节; 游程结束时已读过的下一个字节直接留给下一轮, 不再重复读取
+        int first = pos < end ? buffer.get(pos) : 0;
+        while (pos < end) {
+            final var runClass = runClassOf(first);
+            if (runClass == WHITESPACE
+                || runClass == DIGITS && intConstKind != null
+                || runClass == LETTERS && identifierKind != null) {
+                // 游程的前 SCALAR_PREFIX 个字节逐个检查, 游程更长时才换用向量
+                int cursor = pos + 1;
+                final var prefixEnd = Math.min(end, pos + SCALAR_PREFIX);
+                int next = 0;
+                while (cursor < prefixEnd && runClassOf(next = buffer.get(cursor)) == runClass) {
+                    cursor++;
+                }
+                if (cursor == prefixEnd && cursor < end) {
+                    cursor = runEnd(buffer, cursor, end, runClass);
+                    next = cursor < end ? buffer.get(cursor) : 0;
+                }
+
+                if (runClass == WHITESPACE) {
+                    pos = cursor;
+                    first = next;
+                    continue;
+                }
+                if (!endOfInput && cursor == end) {
+                    return pos;
+                }
+                if (runClass == DIGITS) {
+                    sink.accept(intConstKind, pos, cursor);
+                    pos = cursor;
+                    first = next;
+                    continue;
+                }
+                // 非 ASCII 字母可能延长标识符, 这种情况交给自动机
+                if (cursor == end || next >= 0) {
+                    sink.accept(wordKind(buffer, first, pos, cursor), pos, cursor);
+                    pos = cursor;
+                    first = next;
+                    continue;
+                }
+            } else if (runClass == OTHER && first >= 0 && singleByteKinds[first] != null) {
+                // 自动机读入该字节后即不能再延长, 与逐字节识别的结果相同
+                if (!endOfInput && pos + 1 == end) {
+                    return pos;
+                }
+                sink.accept(singleByteKinds[first], pos, pos + 1);
+                pos++;
+                first = pos < end ? buffer.get(pos) : 0;
+                continue;
+            }
+
+            int state = LexerDFA.START;
+            int cursor = pos;
+            int lastAccept = LexerDFA.DEAD;
+            int lastEnd = pos;
+            while (cursor < end) {
+                state = dfa.next(state, dfa.classOf(buffer.get(cursor) & 0xFF));
+                if (state == LexerDFA.DEAD) {
+                    break;
+                }
+                cursor++;
+                if (dfa.acceptKind(state) != null) {
+                    lastAccept = state;
+                    lastEnd = cursor;
+                }
+            }
+
+            if (!endOfInput && cursor == end) {
+                return pos;
+            }
+
+            if (lastAccept == LexerDFA.DEAD) {
+                pos++;
+            } else {
+                sink.accept(dfa.acceptKind(lastAccept), pos, lastEnd);
+                pos = lastEnd;
+            }
+            first = pos < end ? buffer.get(pos) : 0;
+        }
+
+        return pos;
+    }
+
+    /**
+     * 求从 pos 开始, 属于同一类别的字节的结束位置
+     *
+     * @param runClass 游程的类别: WHITESPACE, DIGITS 或 LETTERS
+     * @return 第一个不属于该类别的字节的位置, 不超过 end
+     */
+    private static int runEnd(ByteBuffer buffer, int pos, int end, int runClass) {
+        while (pos + LANES <= end) {
+            final var v = ByteVector.fromByteBuffer(SPECIES, buffer, pos, ByteOrder.nativeOrder());
+            final var stop = classMask(v, runClass).not().firstTrue();
+            if (stop < LANES) {
+                return pos + stop;
+            }
+            pos += LANES;
+        }
+        // 末尾不足一个向量时按掩码读取, 超出 end 的通道既不读取也不属于游程
+        final var inRange = SPECIES.indexInRange(pos, end);
+        final var v = ByteVector.fromByteBuffer(SPECIES, buffer, pos, ByteOrder.nativeOrder(), inRange);
+        return pos + classMask(v, runClass).and(inRange).not().firstTrue();
+    }
+
+    /**
+     * @return 字母串 [begin, end) 的类型, 关键字或标识符
+     */
+    private TokenKind wordKind(ByteBuffer buffer, int first, int begin, int end) {
+        int state = afterFirstByte[first];
+        if (state == identifierState || end - begin > dfa.maxKeywordLength()) {
+            return identifierKind;
+        }
+        for (int i = begin + 1; i < end; i++) {
+            state = dfa.next(state, dfa.classOf(buffer.get(i)));
+        }
+        return dfa.acceptKind(state);
+    }
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    // 大多数游程只有一两个字节, 每个游程都读入向量的开销远大于逐字节检查, 故只有比这更长的游程才使用向量
+    private static final int SCALAR_PREFIX = 8;
+
+    private static final byte SPACE = ' ';
+    private static final byte TAB = '\t';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private static final int WHITESPACE = 0;
+    private static final int DIGITS = 1;
+    private static final int LETTERS = 2;
+    private static final int OTHER = 3;
+    // 各 ASCII 字节所属的游程类别
+    private static final byte[] RUN_CLASSES = new byte[128];
+
+    static {
+        Arrays.fill(RUN_CLASSES, (byte) OTHER);
+        for (final var c : new byte[]{SPACE, TAB, CR, LF}) {
+            RUN_CLASSES[c] = WHITESPACE;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            RUN_CLASSES[c] = DIGITS;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            RUN_CLASSES[c] = LETTERS;
+            RUN_CLASSES[Character.toUpperCase(c)] = LETTERS;
+        }
+    }
+
+    private final LexerDFA dfa;
+    private final TokenKind identifierKind;
+    private final TokenKind intConstKind;
+    // 一般标识符的状态, 以及从起始状态读入各 ASCII 字符后到达的状态
+    private final int identifierState;
+    private final int[] afterFirstByte = new int[128];
+    // 单独一个字节即构成完整词素的 ASCII 字节 (如各个标点) 的类型, 其余为 null
+    private final TokenKind[] singleByteKinds = new TokenKind[128];
+
+    private static VectorMask<Byte> classMask(ByteVector v, int runClass) {
+        return switch (runClass) {
+            case WHITESPACE -> v.eq(SPACE).or(v.eq(TAB)).or(v.eq(CR)).or(v.eq(LF));
+            case DIGITS -> v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9'));
+            default -> {
+                // ASCII 字母与 0x20 按位或之后即为小写字母, 非 ASCII 字节为负数, 不在范围内
+                final var lower = v.or((byte) 0x20);
+                yield lower.compare(VectorOperators.GE, (byte) 'a').and(lower.compare(VectorOperators.LE, (byte) 'z'));
+            }
+        };
+    }
+
+    /**
+     * @param c 有符号的字节, 非 ASCII 字节为负数
+     * @return 该字节所属的游程类别
+     */
+    private static int runClassOf(int c) {
+        return c >= 0 ? RUN_CLASSES[c] : OTHER;
+    }
+}
@@ -2,63 +2,94 @@ package cn.edu.hitsz.compiler;
 
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
 import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.ObserverPipeline;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
 import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.TraceRecorder;
+import cn.edu.hitsz.compiler.parser.TraceReplayer;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.LRTableCache;
+import cn.edu.hitsz.compiler.parser.table.TableClassGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
 import cn.edu.hitsz.compiler.parser.table.TableLoader;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.CompilerOptions;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import cn.edu.hitsz.compiler.utils.IREmulator;
 
 import java.util.Objects;
+import java.util.function.Consumer;
 
 public class Main {
     public static void main(String[] args) {
+        // 预先生成的分析表类中已含有码点与语法, 此时不再读取码点文件
+        final var generatedTable = CompilerOptions.AOT_LR_TABLE ? TableClassGenerator.loadGenerated() : null;
+        if (CompilerOptions.AOT_LR_TABLE && generatedTable == null) {
+            System.err.println("Generated LR table class not found, reading grammar files instead");
+        }
+
         // 构建符号表以供各部分使用
-        TokenKind.loadTokenKinds();
-        final var symbolTable = new SymbolTable();
+        if (generatedTable == null) {
+            TokenKind.loadTokenKinds();
+        }
 
-        // 词法分析
-        final var lexer = new LexicalAnalyzer(symbolTable);
-        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
-        lexer.run();
-        lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
-        final var tokens = lexer.getTokens();
-        symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
-
-        // 读取第三方程序构造的 LR 分析表
-        final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
-
-        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        // final var tableGenerator = new TableGenerator();
-        // tableGenerator.run();
-        // final var lrTable = tableGenerator.getTable();
-        // lrTable.dumpTable("data/out/lrTable.csv");
+        // 重放解析轨迹时不再进行词法分析与语法分析, 分析前的符号表与各个动作都取自轨迹
+        final var replayer = CompilerOptions.TRACE_REPLAY_PATH != null
+            ? TraceReplayer.open(CompilerOptions.TRACE_REPLAY_PATH) : null;
+        final SymbolTable symbolTable;
+        final SyntaxAnalyzer parser;
+        final Consumer<ActionObserver> attach;
+        if (replayer != null) {
+            symbolTable = replayer.getSymbolTable();
+            replayer.dumpTokens(FilePathConfig.TOKEN_PATH);
+            symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
+            parser = null;
+            attach = replayer::registerObserver;
+        } else {
+            symbolTable = new SymbolTable();
+            parser = createParser(symbolTable, generatedTable);
+            attach = parser::registerObserver;
+        }
 
-        // 加载 LR 分析驱动程序
-        final var parser = new SyntaxAnalyzer(symbolTable);
-        parser.loadTokens(tokens);
-        parser.loadLRTable(lrTable);
+        // 记录解析轨迹的 Observer 直接挂在驱动程序上
+        if (CompilerOptions.TRACE_RECORD_PATH != null) {
+            attach.accept(new TraceRecorder(CompilerOptions.TRACE_RECORD_PATH));
+        }
+
+        // 异步分派时各 Observer 加入流水线, 由流水线作为驱动程序唯一的 Observer
+        final var pipeline = CompilerOptions.ASYNC_OBSERVERS
+            ? new ObserverPipeline(CompilerOptions.ASYNC_OBSERVER_BUFFER_SIZE) : null;
+        final Consumer<ActionObserver> register = pipeline != null ? pipeline::addObserver : attach;
 
         // 加入生成规约列表的 Observer
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
-        parser.registerObserver(productionCollector);
+        register.accept(productionCollector);
 
         // 加入用作语义检查的 Observer
         final var semanticAnalyzer = new SemanticAnalyzer();
-        parser.registerObserver(semanticAnalyzer);
+        register.accept(semanticAnalyzer);
 
         // 加入用作 IR 生成的 Observer
         final var irGenerator = new IRGenerator();
-        parser.registerObserver(irGenerator);
+        register.accept(irGenerator);
 
-        // 执行语法解析并在解析过程中依次调用各 Observer
-        parser.run();
+        if (pipeline != null) {
+            attach.accept(pipeline);
+        }
+
+        // 执行语法解析 (或重放轨迹) 并在解析过程中依次调用各 Observer
+        if (replayer != null) {
+            replayer.run();
+        } else {
+            parser.run();
+        }
 
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
@@ -76,4 +107,63 @@ public class Main {
         asmGenerator.run();
         asmGenerator.dump(FilePathConfig.ASSEMBLY_LANGUAGE_PATH);
     }
+
+    /**
+     * 词法分析, 读取或构造 LR 分析表, 并加载好语法分析驱动程序
+     *
+     * @param symbolTable    符号表
+     * @param generatedTable 预先生成的分析表, 没有时为 null
+     * @return 已加载词法单元与分析表的驱动程序
+     */
+    private static SyntaxAnalyzer createParser(SymbolTable symbolTable, LRTable generatedTable) {
+        // 词法分析
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        final Iterable<Token> tokens;
+        if (CompilerOptions.STREAMING_LEXER) {
+            // 流式模式下词法分析与语法分析交替进行, 词法单元流只能被遍历一次
+            final var stream = lexer.stream(FileUtils.openChannel(FilePathConfig.SRC_CODE_PATH));
+            tokens = () -> stream;
+        } else {
+            if (CompilerOptions.MAPPED_LEXER || CompilerOptions.SIMD_LEXER) {
+                lexer.loadFileMapped(FilePathConfig.SRC_CODE_PATH);
+            } else {
+                lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+            }
+            if (CompilerOptions.LEXER_CHUNKS > 1) {
+                lexer.runParallel(CompilerOptions.LEXER_CHUNKS);
+            } else if (CompilerOptions.COMPACT_TOKENS) {
+                lexer.runCompact();
+            } else {
+                lexer.run();
+            }
+            lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
+            // 完整读入时交给驱动程序的是词法单元列表本身, 可以按下标读取
+            tokens = lexer.getTokens();
+            symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
+        }
+
+        // 读取第三方程序构造的 LR 分析表, 或由语法文件直接构造
+        final LRTable lrTable;
+        if (generatedTable != null) {
+            lrTable = generatedTable;
+        } else if (CompilerOptions.TABLE_GENERATOR != null) {
+            // 使用框架自带部分直接从 grammar.txt 构造 LR 分析表
+            final var mode = TableGenerator.Mode.valueOf(CompilerOptions.TABLE_GENERATOR.toUpperCase());
+            final var tableGenerator = new TableGenerator(mode);
+            tableGenerator.setParallelism(CompilerOptions.TABLE_GENERATOR_THREADS);
+            tableGenerator.run();
+            lrTable = tableGenerator.getTable();
+        } else if (CompilerOptions.LR_TABLE_CACHE) {
+            lrTable = LRTableCache.load(FilePathConfig.LR1_TABLE_PATH);
+        } else {
+            final var tableLoader = new TableLoader();
+            lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
+        }
+
+        // 加载 LR 分析驱动程序
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(lrTable);
+        return parser;
+    }
 }
@@ -46,6 +46,10 @@ public class AssemblyGenerator {
     //寄存器分配表
     private final Map<Register, IRVariable> regMap = new HashMap<>();
 
+    //按 IRVariable 的编号记录其所在的寄存器, 具名变量与临时变量的编号互相独立, 故分开存放
+    private Register[] namedRegisters = new Register[16];
+    private Register[] tempRegisters = new Register[16];
+
     //保存仍要被使用的 IRVariable , 便于寄存器分配时进行判断
     private final List<IRVariable> irVarList = new ArrayList<>();
     public void loadIR(List<Instruction> originInstructions) {
@@ -247,14 +251,15 @@ public class AssemblyGenerator {
         var result = currentInstruction.getResult();
 
         // 若当前变量已经在之前被分配寄存器, 直接返回
-        if (regMap.containsValue(result)) {
-            return getReg(result);
+        final var allocated = registerOf(result);
+        if (allocated != null) {
+            return allocated;
         }
 
         // 其它指令不能分配寄存器 a0 , 也不能分配 regMap 中已有的寄存器
         for (var registerName : Register.values()) {
             if (!regMap.containsKey(registerName) && (registerName != Register.a0)) {
-                regMap.put(registerName, result);
+                bind(registerName, result);
                 return registerName;
             }
         }
@@ -262,7 +267,7 @@ public class AssemblyGenerator {
         // 若当前已无空闲的寄存器, 检测是否有不再被使用的变量(若有则分配存放该变量的寄存器）
         for (var registerName : regMap.keySet()) {
             if (!irVarList.contains(regMap.get(registerName))) {
-                regMap.put(registerName, result);
+                bind(registerName, result);
                 return registerName;
             }
         }
@@ -275,14 +280,62 @@ public class AssemblyGenerator {
      * 用于根据 IRVariable 从 regMap 查找出分配的寄存器
      */
     private Register getReg(IRVariable irVariable) {
-        for (var key : regMap.keySet()) {
-            if (Objects.equals(regMap.get(key).getName(), irVariable.getName())) {
-                return key;
-            }
+        final var register = registerOf(irVariable);
+        if (register != null) {
+            return register;
         }
         // 若没找到, 说明当前变量还没有被分配寄存器, 报错
         throw new RuntimeException("register missing!");
     }
+
+    /**
+     * 将寄存器分配给变量, 并解除该寄存器原先所存变量的记录
+     */
+    private void bind(Register register, IRVariable irVariable) {
+        final var previous = regMap.put(register, irVariable);
+        if (previous != null) {
+            recordRegister(previous, null);
+        }
+        recordRegister(irVariable, register);
+    }
+
+    /**
+     * @return 变量当前所在的寄存器, 未分配时为 null
+     */
+    private Register registerOf(IRVariable irVariable) {
+        final var index = irVariable.getIndex();
+        if (index < 0) {
+            // 没有编号的变量只能按名字查找
+            for (var key : regMap.keySet()) {
+                if (Objects.equals(regMap.get(key).getName(), irVariable.getName())) {
+                    return key;
+                }
+            }
+            return null;
+        }
+
+        final var registers = irVariable.isTemp() ? tempRegisters : namedRegisters;
+        return index < registers.length ? registers[index] : null;
+    }
+
+    private void recordRegister(IRVariable irVariable, Register register) {
+        final var index = irVariable.getIndex();
+        if (index < 0) {
+            return;
+        }
+
+        if (irVariable.isTemp()) {
+            if (index >= tempRegisters.length) {
+                tempRegisters = Arrays.copyOf(tempRegisters, Math.max(index + 1, tempRegisters.length * 2));
+            }
+            tempRegisters[index] = register;
+        } else {
+            if (index >= namedRegisters.length) {
+                namedRegisters = Arrays.copyOf(namedRegisters, Math.max(index + 1, namedRegisters.length * 2));
+            }
+            namedRegisters[index] = register;
+        }
+    }
     private List<IRVariable> getIRVariablesFromInstruction(Instruction instruction) {
         List<IRVariable> variables = new ArrayList<>();
         List<IRValue> values = new ArrayList<>();
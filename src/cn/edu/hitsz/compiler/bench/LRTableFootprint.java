@@ -0,0 +1,52 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+/**
+ * 输出 LR 分析表三种表示的空间占用, 并核对压缩表与稠密矩阵的一致性
+ * <br>
+ * 核对规则: 原表中的非错误项在压缩表中必须完全相同; 原表中的错误项在压缩表中只能是错误或该状态的默认规约.
+ * GOTO 表只核对非错误项. 需要在项目根目录下运行:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.bench.LRTableFootprint [lrTable.csv]
+ * </pre>
+ */
+public class LRTableFootprint {
+    public static void main(String[] args) {
+        final var path = args.length > 0 ? args[0] : FilePathConfig.LR1_TABLE_PATH;
+
+        TokenKind.loadTokenKinds();
+        final var table = new TableLoader().load(path);
+        final var dense = CompiledLRTable.compile(table);
+        final var packed = PackedLRTable.pack(table);
+
+        var defaulted = 0;
+        for (int state = 0; state < dense.stateCount(); state++) {
+            for (int code = -1; code < dense.terminalColumns() - 1; code++) {
+                final var expected = dense.action(state, code);
+                final var actual = packed.action(state, code);
+                if (expected == actual) {
+                    continue;
+                }
+                if (expected != CompiledLRTable.ERROR || CompiledLRTable.kindOf(actual) != CompiledLRTable.REDUCE) {
+                    throw new RuntimeException("ACTION[%d, %d] mismatch: %d vs %d".formatted(state, code, expected, actual));
+                }
+                defaulted++;
+            }
+
+            for (int k = 0; k < dense.nonTerminalCount(); k++) {
+                final var expected = dense.gotoState(state, k);
+                if (expected >= 0 && packed.gotoState(state, k) != expected) {
+                    throw new RuntimeException("GOTO[%d, %d] mismatch".formatted(state, k));
+                }
+            }
+        }
+
+        System.out.print(packed.footprintReport());
+        System.out.printf("error entries turned into default reductions: %d%n", defaulted);
+    }
+}
@@ -0,0 +1,102 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.ObserverPipeline;
+import cn.edu.hitsz.compiler.parser.ProductionCollector;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 比较同步调用观察者与经 {@link ObserverPipeline} 异步分派的耗时
+ * <br>
+ * 把 data/in/input_code.txt 的词法单元重复拼接 copies 次, 两种方式交替运行若干轮, 每轮都挂上 Main 中的规约列表收集器与 IR 生成器
+ * (重复拼接的输入中每个变量都被声明多次, 无法通过语义检查, 故不挂语义分析器), 输出每轮的耗时, 并核对两者生成的 IR 完全相同. 异步分派的收益取决于可用的处理器个数, 单核上没有收益.
+ * 驱动程序按当前的选项运行, 加上 {@code -Dcompiler.parser.compiled=true} 等即可与更快的驱动程序组合. 需要在项目根目录下运行:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.bench.ObserverPipelineBenchmark [copies] [rounds] [buffer]
+ * </pre>
+ */
+public class ObserverPipelineBenchmark {
+    private static final Pattern TEMP = Pattern.compile("\\$(\\d+)");
+
+    public static void main(String[] args) {
+        final var copies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final var buffer = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        TokenKind.loadTokenKinds();
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+        lexer.run();
+        final var program = new ArrayList<Token>();
+        lexer.getTokens().forEach(program::add);
+        // 去掉末尾的 EOF 再重复拼接
+        program.remove(program.size() - 1);
+        final var tokens = new ArrayList<Token>(program.size() * copies + 1);
+        for (int i = 0; i < copies; i++) {
+            tokens.addAll(program);
+        }
+        tokens.add(Token.eof());
+
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        System.out.printf("input: %d tokens, %d processors%n", tokens.size(), Runtime.getRuntime().availableProcessors());
+
+        for (int round = 0; round < rounds; round++) {
+            var start = System.nanoTime();
+            final var direct = parse(tokens, table, symbolTable, null);
+            final var directNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final var pipelined = parse(tokens, table, symbolTable, new ObserverPipeline(buffer));
+            final var pipelinedNanos = System.nanoTime() - start;
+
+            if (!direct.equals(pipelined)) {
+                throw new RuntimeException("Pipelined observers produced different IR");
+            }
+            System.out.printf("round %2d: %d instructions, direct %.1f ms, pipelined %.1f ms, speedup %.2fx%n",
+                round, direct.size(), directNanos / 1e6, pipelinedNanos / 1e6, (double) directNanos / pipelinedNanos);
+        }
+    }
+
+    /**
+     * @param pipeline 为 null 时同步调用观察者
+     * @return 生成的 IR 的文本. 临时变量的序号是全局递增的, 这里减去本次生成的第一个临时变量的序号, 使两次运行可以比较
+     */
+    private static List<String> parse(List<Token> tokens, LRTable table, SymbolTable symbolTable, ObserverPipeline pipeline) {
+        final var analyzer = new SyntaxAnalyzer(symbolTable);
+        final var irGenerator = new IRGenerator();
+        final var observers = List.of(new ProductionCollector(GrammarInfo.getBeginProduction()), irGenerator);
+        if (pipeline != null) {
+            observers.forEach(pipeline::addObserver);
+            analyzer.registerObserver(pipeline);
+        } else {
+            observers.forEach(analyzer::registerObserver);
+        }
+        analyzer.loadTokens(tokens);
+        analyzer.loadLRTable(table);
+        analyzer.run();
+        final var instructions = irGenerator.getIR();
+        final var base = instructions.stream()
+            .flatMap(instruction -> instruction.getOperands().stream())
+            .filter(operand -> operand instanceof IRVariable variable && variable.isTemp())
+            .mapToInt(operand -> ((IRVariable) operand).getIndex())
+            .min().orElse(0);
+        return instructions.stream()
+            .map(instruction -> TEMP.matcher(instruction.toString())
+                .replaceAll(match -> "\\$" + (Integer.parseInt(match.group(1)) - base)))
+            .toList();
+    }
+}
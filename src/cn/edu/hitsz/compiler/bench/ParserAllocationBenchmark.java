@@ -0,0 +1,105 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.CompilerOptions;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测量语法分析驱动程序每个词法单元分配的字节数
+ * <br>
+ * 把 data/in/input_code.txt 的词法单元重复拼接 copies 次, 以同一个 SyntaxAnalyzer 反复分析, 每轮前后读取当前线程累计分配的字节数.
+ * 注册的观察者什么也不做, 因此测得的分配全部来自驱动程序. 驱动程序按当前的选项选择, 需要在项目根目录下运行:
+ * <pre>
+ *     java -Dcompiler.parser.compiled=true -cp out cn.edu.hitsz.compiler.bench.ParserAllocationBenchmark [copies] [rounds]
+ * </pre>
+ * 预热后再分别分析完整的输入与一半长度的输入, 两者分配量之差即每个词法单元的分配量. 以稠密矩阵驱动
+ * ({@code -Dcompiler.parser.compiled=true}) 时该值必须为 0, 否则以异常退出;
+ * 不加该选项即可对比原有驱动程序的分配量.
+ */
+public class ParserAllocationBenchmark {
+    public static void main(String[] args) {
+        final var copies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        TokenKind.loadTokenKinds();
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+        lexer.run();
+        final var program = new ArrayList<Token>();
+        lexer.getTokens().forEach(program::add);
+        program.remove(program.size() - 1);
+
+        final var analyzer = new SyntaxAnalyzer(new SymbolTable());
+        analyzer.registerObserver(new Silent());
+        analyzer.loadLRTable(new TableLoader().load(FilePathConfig.LR1_TABLE_PATH));
+        final var tokens = repeat(program, copies);
+        System.out.printf("input: %d tokens, compiled table: %b%n", tokens.size(), CompilerOptions.COMPILED_LR_TABLE);
+
+        for (int round = 0; round < rounds; round++) {
+            final var start = System.nanoTime();
+            final var allocated = measure(analyzer, tokens);
+            final var nanos = System.nanoTime() - start;
+            System.out.printf("round %2d: %.1f ms, %d bytes allocated, %.3f bytes/token%n",
+                round, nanos / 1e6, allocated, (double) allocated / tokens.size());
+        }
+
+        // 每次分析还有与输入长度无关的固定开销 (如 accept 时遍历观察者), 以两种长度的输入之差衡量每个词法单元的分配
+        final var half = repeat(program, copies / 2);
+        final var perToken = (double) (measure(analyzer, tokens) - measure(analyzer, half)) / (tokens.size() - half.size());
+        System.out.printf("marginal allocation: %.3f bytes/token%n", perToken);
+        if (CompilerOptions.COMPILED_LR_TABLE && perToken != 0) {
+            throw new RuntimeException("Compiled driver still allocates %.3f bytes/token".formatted(perToken));
+        }
+    }
+
+    /**
+     * @return 分析一遍 tokens 时当前线程分配的字节数
+     */
+    private static long measure(SyntaxAnalyzer analyzer, List<Token> tokens) {
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final var thread = Thread.currentThread().getId();
+        analyzer.loadTokens(tokens);
+        final var before = threads.getThreadAllocatedBytes(thread);
+        analyzer.run();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    private static List<Token> repeat(List<Token> program, int copies) {
+        final var tokens = new ArrayList<Token>(program.size() * copies + 1);
+        for (int i = 0; i < copies; i++) {
+            tokens.addAll(program);
+        }
+        tokens.add(Token.eof());
+        return tokens;
+    }
+
+    private static class Silent implements ActionObserver {
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.ParserClassGenerator;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.util.ArrayList;
+
+/**
+ * 比较表驱动的语法分析驱动程序与 {@link ParserClassGenerator} 生成的驱动程序的吞吐量
+ * <br>
+ * 把 data/in/input_code.txt 的词法单元重复拼接 copies 次, 两种驱动程序交替运行若干轮, 输出每轮的耗时,
+ * 并核对两者发出的观察者通知序列的摘要一致. 观察者只对通知计数与求摘要, 因此耗时几乎全部来自驱动程序本身.
+ * 表驱动的一方按当前的选项运行 {@link SyntaxAnalyzer#run()}, 加上 {@code -Dcompiler.parser.compiled=true} 即与稠密矩阵比较.
+ * 需要在项目根目录下运行:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.bench.ParserBenchmark [copies] [rounds]
+ * </pre>
+ */
+public class ParserBenchmark {
+    public static void main(String[] args) {
+        final var copies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        TokenKind.loadTokenKinds();
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+        lexer.run();
+        final var program = new ArrayList<Token>();
+        lexer.getTokens().forEach(program::add);
+        // 去掉末尾的 EOF 再重复拼接
+        program.remove(program.size() - 1);
+        final var tokens = new ArrayList<Token>(program.size() * copies + 1);
+        for (int i = 0; i < copies; i++) {
+            tokens.addAll(program);
+        }
+        tokens.add(Token.eof());
+
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        final var generated = ParserClassGenerator.generate(CompiledLRTable.compile(table));
+        System.out.printf("input: %d tokens%n", tokens.size());
+
+        for (int round = 0; round < rounds; round++) {
+            final var tableDriven = new Digest();
+            final var analyzer = new SyntaxAnalyzer(new SymbolTable());
+            analyzer.registerObserver(tableDriven);
+            analyzer.loadTokens(tokens);
+            analyzer.loadLRTable(table);
+            var start = System.nanoTime();
+            analyzer.run();
+            final var tableNanos = System.nanoTime() - start;
+
+            final var coded = new Digest();
+            final var notifier = new SyntaxAnalyzer(new SymbolTable());
+            notifier.registerObserver(coded);
+            start = System.nanoTime();
+            generated.parse(tokens, 0, notifier);
+            final var codedNanos = System.nanoTime() - start;
+
+            if (tableDriven.count != coded.count || tableDriven.checksum != coded.checksum) {
+                throw new RuntimeException("Parsers disagree: %d/%d notifications".formatted(tableDriven.count, coded.count));
+            }
+
+            System.out.printf("round %2d: %d notifications, table %.1f ms, generated %.1f ms, speedup %.2fx%n",
+                round, coded.count, tableNanos / 1e6, codedNanos / 1e6, (double) tableNanos / codedNanos);
+        }
+    }
+
+    /**
+     * 对通知序列求摘要的观察者, 也供同一包中的其它测量使用
+     */
+    static class Digest implements ActionObserver {
+        long count = 0;
+        long checksum = 0;
+
+        private void add(long value) {
+            count++;
+            checksum = checksum * 31 + value;
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            add(currentStatus.index() * 64L + currentToken.getKind().getCode());
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            add(-(currentStatus.index() * 64L + production.index()));
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            add(Long.MIN_VALUE + currentStatus.index());
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+}
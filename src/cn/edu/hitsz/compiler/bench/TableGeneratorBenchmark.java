@@ -0,0 +1,104 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.Term;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比较各种分析表构造方法的耗时
+ * <br>
+ * 先对 data/in/grammar.txt 构造一次, 再对一个合成文法构造: 该文法保留 grammar.txt 的语句结构, 表达式则按括号的嵌套深度分为
+ * depth 组, 每组是一份独立的 + - * 三级表达式文法, 第 b 组的括号内是第 b + 1 组的表达式. 文法无二义且为 LR(1),
+ * 产生式条数约为 9 × depth. 每次构造都单独输出其中计算 nullable, FIRST 与 FOLLOW 集合的耗时. 需要在项目根目录下运行:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.bench.TableGeneratorBenchmark [depth] [modes] [threads]
+ * </pre>
+ * modes 为逗号分隔的构造方法名, 默认为 slr1,lalr1,lr1. threads 为构造项目集族的线程数, 默认为 1;
+ * 大于 1 时还会检查并行构造出的转移与顺序构造完全相同
+ */
+public class TableGeneratorBenchmark {
+    public static void main(String[] args) {
+        final var depth = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        final var modes = (args.length > 1 ? args[1] : "slr1,lalr1,lr1").split(",");
+        final var threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        TokenKind.loadTokenKinds();
+        final var synthetic = syntheticGrammar(depth);
+        for (final var name : modes) {
+            final var mode = TableGenerator.Mode.valueOf(name.toUpperCase());
+            run(mode, "grammar.txt", GrammarInfo.getProductionsInOrder(), threads);
+            run(mode, "synthetic", synthetic, threads);
+        }
+    }
+
+    private static void run(TableGenerator.Mode mode, String name, List<Production> productions, int threads) {
+        final var start = System.nanoTime();
+        final var generator = new TableGenerator(mode, productions);
+        generator.setParallelism(threads);
+        generator.build();
+        final var millis = (System.nanoTime() - start) / 1e6;
+        final var setsMillis = generator.getGrammarSets().computeNanos() / 1e6;
+        System.out.printf("%-6s %-12s %5d productions, %6d states, %8.1f ms (FIRST/FOLLOW %.2f ms)%n",
+            mode, name, productions.size(), generator.getStatusCount(), millis, setsMillis);
+
+        if (threads > 1) {
+            final var sequential = new TableGenerator(mode, productions);
+            sequential.build();
+            if (!sequential.getTransitions().equals(generator.getTransitions())) {
+                throw new RuntimeException("Parallel construction differs from the sequential one: " + mode + " " + name);
+            }
+        }
+    }
+
+    /**
+     * 构造合成文法. 第 b 组为 E_b -> E_b + A_b | A_b, A_b -> A_b - B_b | B_b, B_b -> B_b * F_b | F_b,
+     * F_b -> ( E_{b+1} ) | id | IntConst, 最后一组的括号内回到它自己
+     */
+    static List<Production> syntheticGrammar(int depth) {
+        final var productions = new ArrayList<Production>();
+        final var program = new NonTerminal("P");
+        final var statements = new NonTerminal("S_list");
+        final var statement = new NonTerminal("S");
+        final var declaration = new NonTerminal("D");
+        final var expressions = new NonTerminal[depth];
+        for (int b = 0; b < depth; b++) {
+            expressions[b] = new NonTerminal("E" + b);
+        }
+
+        final var semicolon = TokenKind.fromString("Semicolon");
+        final var id = TokenKind.fromString("id");
+        add(productions, program, statements);
+        add(productions, statements, statement, semicolon, statements);
+        add(productions, statements, statement, semicolon);
+        add(productions, statement, declaration, id);
+        add(productions, declaration, TokenKind.fromString("int"));
+        add(productions, statement, id, TokenKind.fromString("="), expressions[0]);
+        add(productions, statement, TokenKind.fromString("return"), expressions[0]);
+
+        final var operators = List.of("+", "-", "*");
+        for (int b = 0; b < depth; b++) {
+            var level = expressions[b];
+            for (int k = 0; k < operators.size(); k++) {
+                final var next = new NonTerminal("%s%d".formatted(k + 1 < operators.size() ? "AB".charAt(k) : "F", b));
+                add(productions, level, level, TokenKind.fromString(operators.get(k)), next);
+                add(productions, level, next);
+                level = next;
+            }
+            final var inner = expressions[Math.min(b + 1, depth - 1)];
+            add(productions, level, TokenKind.fromString("("), inner, TokenKind.fromString(")"));
+            add(productions, level, id);
+            add(productions, level, TokenKind.fromString("IntConst"));
+        }
+        return productions;
+    }
+
+    private static void add(List<Production> productions, NonTerminal head, Term... body) {
+        productions.add(new Production(productions.size() + 1, head, List.of(body)));
+    }
+}
@@ -0,0 +1,91 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.TraceRecorder;
+import cn.edu.hitsz.compiler.parser.TraceReplayer;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * 测量解析轨迹的大小, 以及重放轨迹与实时分析 (词法分析 + 语法分析) 的耗时
+ * <br>
+ * 把 data/in/input_code.txt 的源文本重复拼接 copies 次, 先实时分析一次并记录轨迹, 输出轨迹的字节数与每个词法单元的平均字节数,
+ * 之后实时分析与重放交替运行若干轮, 核对两者发出的观察者通知序列的摘要一致. 需要在项目根目录下运行:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.bench.TraceReplayBenchmark [copies] [rounds] [trace]
+ * </pre>
+ * trace 为轨迹文件路径, 默认为 data/out/trace.bin
+ */
+public class TraceReplayBenchmark {
+    public static void main(String[] args) throws IOException {
+        final var copies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final var rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final var trace = args.length > 2 ? args[2] : "data/out/trace.bin";
+
+        TokenKind.loadTokenKinds();
+        final var source = Files.readString(Path.of(FilePathConfig.SRC_CODE_PATH)).repeat(copies);
+        final var input = Files.createTempFile("trace-input", ".txt");
+        input.toFile().deleteOnExit();
+        Files.writeString(input, source);
+        final var table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+
+        final var recorded = new ParserBenchmark.Digest();
+        final var tokenCount = parse(input.toString(), table, recorded, new TraceRecorder(trace));
+        final var traceBytes = Files.size(Path.of(trace));
+        System.out.printf("input: %d chars, %d tokens; trace: %d bytes, %.2f bytes/token%n",
+            source.length(), tokenCount, traceBytes, (double) traceBytes / tokenCount);
+
+        for (int round = 0; round < rounds; round++) {
+            final var live = new ParserBenchmark.Digest();
+            var start = System.nanoTime();
+            parse(input.toString(), table, live, null);
+            final var liveNanos = System.nanoTime() - start;
+
+            final var replayed = new ParserBenchmark.Digest();
+            start = System.nanoTime();
+            final var replayer = TraceReplayer.open(trace);
+            replayer.registerObserver(replayed);
+            replayer.run();
+            final var replayNanos = System.nanoTime() - start;
+
+            if (live.count != replayed.count || live.checksum != replayed.checksum || live.checksum != recorded.checksum) {
+                throw new RuntimeException("Replay disagrees: %d/%d notifications".formatted(live.count, replayed.count));
+            }
+            System.out.printf("round %2d: %d notifications, live %.1f ms, replay %.1f ms, speedup %.2fx%n",
+                round, replayed.count, liveNanos / 1e6, replayNanos / 1e6, (double) liveNanos / replayNanos);
+        }
+    }
+
+    /**
+     * @param recorder 为 null 时不记录轨迹
+     * @return 词法单元个数
+     */
+    private static int parse(String path, LRTable table, ParserBenchmark.Digest digest, TraceRecorder recorder) {
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(path);
+        lexer.run();
+        final var tokens = new ArrayList<Token>();
+        lexer.getTokens().forEach(tokens::add);
+
+        final var analyzer = new SyntaxAnalyzer(symbolTable);
+        analyzer.registerObserver(digest);
+        if (recorder != null) {
+            analyzer.registerObserver(recorder);
+        }
+        analyzer.loadTokens(tokens);
+        analyzer.loadLRTable(table);
+        analyzer.run();
+        return tokens.size();
+    }
+}
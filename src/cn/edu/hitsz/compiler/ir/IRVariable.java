@@ -7,6 +7,9 @@ package cn.edu.hitsz.compiler.ir;
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
  * IR 变量的等价性由 name 唯一确定.
+ * <br>
+ * 除 name 外, 每个 IR 变量还带有一个编号: 具名变量的编号即其在符号表中的编号, 临时变量的编号即 name 中的数字.
+ * 后端可以直接以编号为数组下标记录变量的信息, 而不必反复对 name 做哈希与比较. 编号未知的具名变量的编号为 -1.
  */
 public class IRVariable implements IRValue {
     /**
@@ -14,14 +17,24 @@ public class IRVariable implements IRValue {
      * @return 一个对应于源语言中具体变量的 IRVariable
      */
     public static IRVariable named(String name) {
-        return new IRVariable(name);
+        return new IRVariable(name, -1);
+    }
+
+    /**
+     * @param name     源语言中变量的名字
+     * @param symbolId 该变量在符号表中的编号
+     * @return 一个对应于源语言中具体变量, 且携带符号表编号的 IRVariable
+     */
+    public static IRVariable named(String name, int symbolId) {
+        return new IRVariable(name, symbolId);
     }
 
     /**
      * @return 一个对应于源语言中的临时变量的新 IRVariable
      */
     public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+        final var index = count++;
+        return new IRVariable("$" + index, index);
     }
 
     public String getName() {
@@ -36,6 +49,13 @@ public class IRVariable implements IRValue {
         return !isTemp();
     }
 
+    /**
+     * @return 具名变量在符号表中的编号, 或临时变量的序号; 编号未知时为 -1
+     */
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -51,10 +71,12 @@ public class IRVariable implements IRValue {
         return name.hashCode();
     }
 
-    private IRVariable(String name) {
+    private IRVariable(String name, int index) {
         this.name = name;
+        this.index = index;
     }
 
     private final String name;
+    private final int index;
     private static int count = 0;
 }
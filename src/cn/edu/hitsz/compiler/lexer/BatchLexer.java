@@ -0,0 +1,80 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 在同一个 JVM 中并发地对多个源文件进行词法分析
+ * <br>
+ * 每个文件都由独立的 {@link LexicalAnalyzer} 与独立的 {@link SymbolTable} 处理, 互不共享任何可变状态;
+ * 所有文件共享的只有只读的 {@link TokenKind} 集合与 {@link LexerDFA} 转移表.
+ * <br>
+ * 任务在调用者提供的 Executor 上执行, 默认使用 {@link ForkJoinPool#commonPool()}. 在支持虚拟线程的 JDK 上,
+ * 也可以传入每任务一线程的虚拟线程 Executor.
+ */
+public class BatchLexer {
+    /**
+     * 单个文件的词法分析结果
+     *
+     * @param path        源文件路径
+     * @param tokens      词法单元列表, 以 EOF 结尾
+     * @param symbolTable 该文件独有的符号表
+     */
+    public record Result(String path, Iterable<Token> tokens, SymbolTable symbolTable) {
+    }
+
+    public BatchLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor 执行词法分析任务的 Executor
+     */
+    public BatchLexer(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 并发地对所有文件进行词法分析, 保证在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @param paths 源文件路径
+     * @return 与 paths 顺序一致的结果列表
+     * @throws RuntimeException 任一文件的词法分析失败
+     */
+    public List<Result> run(Collection<String> paths) {
+        // 在提交任务前构造好共享的自动机, 避免所有任务同时等待其构造
+        LexerDFA.getInstance();
+
+        final var futures = new ArrayList<CompletableFuture<Result>>(paths.size());
+        for (final var path : paths) {
+            futures.add(CompletableFuture.supplyAsync(() -> lex(path), executor));
+        }
+
+        final var results = new ArrayList<Result>(futures.size());
+        for (final var future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                throw new RuntimeException("Lexing failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private final Executor executor;
+
+    private static Result lex(String path) {
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadFile(path);
+        lexer.run();
+        return new Result(path, lexer.getTokens(), symbolTable);
+    }
+}
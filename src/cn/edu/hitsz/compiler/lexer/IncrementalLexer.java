@@ -0,0 +1,469 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * 增量词法分析
+ * <br>
+ * 实例持有源文本, 上一次的词法单元序列以及每个词法单元在源文本中的位置. 每次修改只重新扫描受影响的区域:
+ * <ol>
+ *     <li>自动机识别一个词素时会多读入若干字符才能确定其结束 (最长匹配), 因此对每个词法单元还记录其 "读到的范围".
+ *     读到的范围未触及修改位置的词法单元不受影响</li>
+ *     <li>从最后一个不受影响的词法单元之后开始重新扫描, 直到新产生的词法单元恰好起始于某个位于修改区之后的旧词法单元的位置.
+ *     由于每个词素都从起始状态开始识别, 此后的结果必然与旧结果相同, 于是停止扫描</li>
+ *     <li>用新词法单元替换旧序列中对应的部分</li>
+ * </ol>
+ * 源文本与词法单元序列都存放在间隙缓冲区中, 间隙停在上一次修改的位置. 间隙之后的词法单元记录的是到文本末尾的距离,
+ * 因此修改不需要平移其后的位置, 相邻位置上的连续修改只需移动很少的数据, 代价与文件大小无关.
+ * <br>
+ * 每个标识符在源文本中出现的次数按符号表编号计数. 出现次数从 0 变为正数的标识符加入符号表, 降为 0 的从符号表中移除,
+ * 两者都会在 {@link Result} 中报告.
+ */
+public class IncrementalLexer {
+    /**
+     * 一次修改: 删除源文本 [offset, offset + removedLength) 中的内容并在 offset 处插入 insertedText
+     *
+     * @param offset        修改位置
+     * @param removedLength 删除的字符数
+     * @param insertedText  插入的文本
+     */
+    public record Edit(int offset, int removedLength, String insertedText) {
+    }
+
+    /**
+     * 一次 {@link #apply(List)} 的结果
+     *
+     * @param relexedTokens      重新扫描产生的词法单元数
+     * @param addedIdentifiers   新加入符号表的标识符
+     * @param removedIdentifiers 从符号表中移除的标识符
+     */
+    public record Result(int relexedTokens, Set<String> addedIdentifiers, Set<String> removedIdentifiers) {
+    }
+
+    /**
+     * 对源文本做一次完整的词法分析, 作为之后增量修改的基础. 识别出的标识符会加入符号表
+     *
+     * @param symbolTable 符号表
+     * @param text        源文本
+     */
+    public IncrementalLexer(SymbolTable symbolTable, String text) {
+        this.symbolTable = symbolTable;
+        this.dfa = LexerDFA.getInstance();
+        this.text = new GapText(text);
+
+        final var lexed = new Lexed();
+        relex(0, 0, lexed);
+        splice(0, 0, lexed, new Changes(new LinkedHashSet<>(), new LinkedHashSet<>()));
+    }
+
+    /**
+     * 依次应用修改, 每次修改的位置都相对于应用了之前所有修改后的文本
+     *
+     * @param edits 修改列表
+     * @return 重新扫描的统计以及符号表的变化
+     */
+    public Result apply(List<Edit> edits) {
+        final var changes = new Changes(new LinkedHashSet<>(), new LinkedHashSet<>());
+        var relexed = 0;
+        for (final var edit : edits) {
+            relexed += apply(edit, changes);
+        }
+
+        return new Result(relexed,
+            Collections.unmodifiableSet(changes.added()), Collections.unmodifiableSet(changes.removed()));
+    }
+
+    /**
+     * @return 当前词法单元序列的只读视图, 以 EOF 结尾
+     */
+    public List<Token> getTokens() {
+        return tokenView;
+    }
+
+    /**
+     * @return 当前的源文本
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * @param index 词法单元下标
+     * @return 该词法单元在源文本中的起始位置
+     */
+    public int startOf(int index) {
+        return position(starts, index);
+    }
+
+    /**
+     * @param index 词法单元下标
+     * @return 该词法单元在源文本中的结束位置 (不含)
+     */
+    public int endOf(int index) {
+        return position(ends, index);
+    }
+
+    private final SymbolTable symbolTable;
+    private final LexerDFA dfa;
+    private final GapText text;
+
+    // 除 EOF 外的词法单元及其 [start, end) 与识别时读到的位置 (不含), 以 [gapStart, gapEnd) 为间隙.
+    // 间隙之前的位置是绝对位置, 间隙之后的位置记录为 "文本长度 - 位置"
+    private Token[] tokens = new Token[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] reaches = new int[16];
+    private int gapStart = 0;
+    private int gapEnd = 16;
+    // 所有词法单元中 "读到的位置 - 起始位置" 的最大值, 用于界定可能受修改影响的词法单元
+    private int maxReachSpan = 0;
+
+    // 按符号表编号记录标识符的出现次数
+    private int[] occurrences = new int[16];
+
+    private final List<Token> tokenView = new TokenView();
+
+    /**
+     * 间隙缓冲区中的词法单元序列, 末尾补上 EOF
+     */
+    private class TokenView extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            Objects.checkIndex(index, size());
+            if (index == count()) {
+                return Token.eof();
+            }
+            return tokens[physical(index)];
+        }
+
+        @Override
+        public int size() {
+            return count() + 1;
+        }
+    }
+
+    /**
+     * 重新扫描产生的词法单元, 位置均为修改后文本中的绝对位置
+     */
+    private static class Lexed {
+        private final List<Token> tokens = new ArrayList<>();
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] reaches = new int[16];
+        private int count = 0;
+
+        private void add(Token token, int start, int end, int reach) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                reaches = Arrays.copyOf(reaches, count * 2);
+            }
+            tokens.add(token);
+            starts[count] = start;
+            ends[count] = end;
+            reaches[count] = reach;
+            count++;
+        }
+    }
+
+    /**
+     * 符号表变化的累计, 先加入后移除的标识符相互抵消
+     */
+    private record Changes(Set<String> added, Set<String> removed) {
+        private void add(String identifier) {
+            if (!removed.remove(identifier)) {
+                added.add(identifier);
+            }
+        }
+
+        private void remove(String identifier) {
+            if (!added.remove(identifier)) {
+                removed.add(identifier);
+            }
+        }
+    }
+
+    private int apply(Edit edit, Changes changes) {
+        final var offset = edit.offset();
+        final var removedLength = edit.removedLength();
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new RuntimeException("Edit out of range: " + edit);
+        }
+
+        // 第一个读到的范围越过修改位置的词法单元
+        var first = firstStartAtLeast(offset - maxReachSpan);
+        while (first < count() && position(reaches, first) <= offset) {
+            first++;
+        }
+        // 旧序列中起始于修改区之后的词法单元可以作为重新同步的位置
+        final var resyncFrom = firstStartAtLeast(offset + removedLength);
+
+        // 把间隙移到 first, 其后的位置随即以到文本末尾的距离表示, 修改文本后无需平移
+        moveGap(first);
+        text.replace(offset, removedLength, edit.insertedText());
+
+        final var lexed = new Lexed();
+        final var resync = relex(first == 0 ? 0 : endOf(first - 1), resyncFrom, lexed);
+        splice(first, resync - first, lexed, changes);
+        return lexed.count;
+    }
+
+    /**
+     * 从 pos 开始重新扫描, 直到新词法单元的起始位置与旧序列中下标不小于 resyncFrom 的某个词法单元的起始位置重合
+     *
+     * @return 重新同步处的旧词法单元下标; 扫描到文本末尾时为旧词法单元的个数
+     */
+    private int relex(int pos, int resyncFrom, Lexed out) {
+        final var limit = count();
+        var candidate = resyncFrom;
+        final var length = text.length();
+        while (pos < length) {
+            if (dfa.isSkip(dfa.classOf(text.charAt(pos)))) {
+                pos++;
+                continue;
+            }
+
+            while (candidate < limit && startOf(candidate) < pos) {
+                candidate++;
+            }
+            if (candidate < limit && startOf(candidate) == pos) {
+                return candidate;
+            }
+
+            int state = LexerDFA.START;
+            int cursor = pos;
+            int lastAccept = LexerDFA.DEAD;
+            int lastEnd = pos;
+            while (cursor < length) {
+                state = dfa.next(state, dfa.classOf(text.charAt(cursor)));
+                if (state == LexerDFA.DEAD) {
+                    break;
+                }
+                cursor++;
+                if (dfa.acceptKind(state) != null) {
+                    lastAccept = state;
+                    lastEnd = cursor;
+                }
+            }
+
+            if (lastAccept == LexerDFA.DEAD) {
+                pos++;
+                continue;
+            }
+
+            // 使自动机停下的字符 (或文本末尾) 也算作读到的范围
+            final var reach = cursor + 1;
+            out.add(makeToken(dfa.acceptKind(lastAccept), pos, lastEnd), pos, lastEnd, reach);
+            maxReachSpan = Math.max(maxReachSpan, reach - pos);
+            pos = lastEnd;
+        }
+
+        return limit;
+    }
+
+    private Token makeToken(TokenKind kind, int begin, int end) {
+        if (!dfa.carriesText(kind)) {
+            return Token.simple(kind);
+        }
+        if (dfa.isIdentifier(kind)) {
+            final var entry = symbolTable.get(symbolTable.intern(text, begin, end));
+            return Token.identifier(kind, entry.getText(), entry.getId());
+        }
+        return Token.normal(kind, text.subSequence(begin, end).toString());
+    }
+
+    /**
+     * 用 lexed 替换 [first, first + removedCount) 中的词法单元, 调用前间隙已位于 first
+     */
+    private void splice(int first, int removedCount, Lexed lexed, Changes changes) {
+        // 先计入新出现的标识符, 再扣除被替换的, 以免仍在使用的标识符被移出符号表
+        for (final var token : lexed.tokens) {
+            if (token.getSymbolId() >= 0 && countOccurrence(token.getSymbolId(), 1) == 1) {
+                changes.add(token.getText());
+            }
+        }
+        for (int i = 0; i < removedCount; i++) {
+            final var token = tokens[gapEnd + i];
+            tokens[gapEnd + i] = null;
+            if (token.getSymbolId() >= 0 && countOccurrence(token.getSymbolId(), -1) == 0) {
+                symbolTable.remove(token.getText());
+                changes.remove(token.getText());
+            }
+        }
+        gapEnd += removedCount;
+
+        if (gapEnd - gapStart < lexed.count) {
+            grow(lexed.count);
+        }
+        for (int i = 0; i < lexed.count; i++) {
+            tokens[gapStart + i] = lexed.tokens.get(i);
+        }
+        System.arraycopy(lexed.starts, 0, starts, gapStart, lexed.count);
+        System.arraycopy(lexed.ends, 0, ends, gapStart, lexed.count);
+        System.arraycopy(lexed.reaches, 0, reaches, gapStart, lexed.count);
+        gapStart += lexed.count;
+    }
+
+    /**
+     * 移动间隙使其起始于逻辑下标 index, 跨过间隙的位置在绝对位置与到末尾的距离之间转换
+     */
+    private void moveGap(int index) {
+        final var length = text.length();
+        while (gapStart > index) {
+            gapStart--;
+            gapEnd--;
+            moveEntry(gapStart, gapEnd, length);
+        }
+        while (gapStart < index) {
+            moveEntry(gapEnd, gapStart, length);
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void moveEntry(int from, int to, int length) {
+        // 间隙为空时 from 与 to 相同, 只需转换位置的表示
+        final var token = tokens[from];
+        tokens[from] = null;
+        tokens[to] = token;
+        // 绝对位置与到末尾的距离互为 length - x
+        starts[to] = length - starts[from];
+        ends[to] = length - ends[from];
+        reaches[to] = length - reaches[from];
+    }
+
+    private void grow(int needed) {
+        final var tail = tokens.length - gapEnd;
+        final var capacity = Math.max(tokens.length * 2, gapStart + needed + tail);
+        final var newGapEnd = capacity - tail;
+
+        tokens = regap(tokens, Arrays.copyOf(tokens, capacity), newGapEnd, tail);
+        starts = regap(starts, Arrays.copyOf(starts, capacity), newGapEnd, tail);
+        ends = regap(ends, Arrays.copyOf(ends, capacity), newGapEnd, tail);
+        reaches = regap(reaches, Arrays.copyOf(reaches, capacity), newGapEnd, tail);
+        gapEnd = newGapEnd;
+    }
+
+    private <T> T regap(T old, T grown, int newGapEnd, int tail) {
+        System.arraycopy(old, gapEnd, grown, newGapEnd, tail);
+        return grown;
+    }
+
+    private int count() {
+        return tokens.length - (gapEnd - gapStart);
+    }
+
+    private int physical(int index) {
+        return index < gapStart ? index : index + (gapEnd - gapStart);
+    }
+
+    private int position(int[] positions, int index) {
+        return index < gapStart ? positions[index] : text.length() - positions[index + (gapEnd - gapStart)];
+    }
+
+    /**
+     * @return 标识符更新后的出现次数
+     */
+    private int countOccurrence(int symbolId, int change) {
+        if (symbolId >= occurrences.length) {
+            occurrences = Arrays.copyOf(occurrences, Math.max(symbolId + 1, occurrences.length * 2));
+        }
+        occurrences[symbolId] += change;
+        return occurrences[symbolId];
+    }
+
+    /**
+     * @return 第一个起始位置不小于 pos 的词法单元下标, 不存在时为词法单元的个数
+     */
+    private int firstStartAtLeast(int pos) {
+        var low = 0;
+        var high = count();
+        while (low < high) {
+            final var mid = (low + high) >>> 1;
+            if (startOf(mid) < pos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 以间隙缓冲区存放的源文本
+     */
+    private static final class GapText implements CharSequence {
+        private char[] buffer;
+        private int gapStart;
+        private int gapEnd;
+
+        private GapText(String text) {
+            buffer = Arrays.copyOf(text.toCharArray(), Math.max(16, text.length() * 2));
+            gapStart = text.length();
+            gapEnd = buffer.length;
+        }
+
+        @Override
+        public int length() {
+            return buffer.length - (gapEnd - gapStart);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < gapStart ? buffer[index] : buffer[index + (gapEnd - gapStart)];
+        }
+
+        @Override
+        public CharSequence subSequence(int begin, int end) {
+            final var result = new StringBuilder(end - begin);
+            for (int i = begin; i < end; i++) {
+                result.append(charAt(i));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, gapStart) + new String(buffer, gapEnd, buffer.length - gapEnd);
+        }
+
+        private void replace(int offset, int removedLength, String inserted) {
+            moveGap(offset);
+            gapEnd += removedLength;
+            if (gapEnd - gapStart < inserted.length()) {
+                final var tail = buffer.length - gapEnd;
+                final var grown = new char[Math.max(buffer.length * 2, gapStart + inserted.length() + tail)];
+                System.arraycopy(buffer, 0, grown, 0, gapStart);
+                System.arraycopy(buffer, gapEnd, grown, grown.length - tail, tail);
+                buffer = grown;
+                gapEnd = grown.length - tail;
+            }
+            inserted.getChars(0, inserted.length(), buffer, gapStart);
+            gapStart += inserted.length();
+        }
+
+        private void moveGap(int offset) {
+            if (offset < gapStart) {
+                final var moved = gapStart - offset;
+                System.arraycopy(buffer, offset, buffer, gapEnd - moved, moved);
+                gapStart -= moved;
+                gapEnd -= moved;
+            } else if (offset > gapStart) {
+                final var moved = offset - gapStart;
+                System.arraycopy(buffer, gapEnd, buffer, gapStart, moved);
+                gapStart += moved;
+                gapEnd += moved;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按最长匹配原则识别词素的扫描器
+ * <br>
+ * 扫描器只在下标上移动, 识别出的词素交给 {@link TokenSink}. 空白符被跳过, 无法识别的字符被忽略.
+ *
+ * @see LexerDFA 表驱动的实现
+ * @see LexerClassGenerator 为当前码点文件生成的专用实现
+ */
+public interface LexemeScanner {
+    /**
+     * 在 text 的 [begin, end) 区间上识别词素
+     *
+     * @param text       源文本
+     * @param begin      起始下标
+     * @param end        结束下标
+     * @param endOfInput end 是否就是输入的末尾. 若不是, 则扫描会在一个可能被截断的词素之前停下
+     * @param sink       词素回调
+     * @return 扫描停止的位置
+     */
+    int scan(CharSequence text, int begin, int end, boolean endOfInput, TokenSink sink);
+
+    /**
+     * 在字节缓冲区的 [begin, end) 区间上识别 ASCII 词素, 使用绝对下标读取
+     *
+     * @param buffer     源字节
+     * @param begin      起始下标
+     * @param end        结束下标
+     * @param endOfInput end 是否就是输入的末尾
+     * @param sink       词素回调
+     * @return 扫描停止的位置
+     */
+    int scan(ByteBuffer buffer, int begin, int end, boolean endOfInput, TokenSink sink);
+}
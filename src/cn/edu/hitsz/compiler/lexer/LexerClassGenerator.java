@@ -0,0 +1,243 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.utils.SourceCompiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 为当前码点文件生成专用的词法扫描器
+ * <br>
+ * {@link LexerDFA} 在运行时查表; 而该类把同一个自动机翻译成一段 Java 源码: 字符类, 状态转移与接受类型都写成 switch 表达式中的常量,
+ * 扫描循环与 {@link LexerDFA#scan(CharSequence, int, int, boolean, TokenSink)} 完全相同. 源码在内存中由 javax.tools 编译,
+ * 再通过 {@link MethodHandles.Lookup#defineHiddenClass(byte[], boolean, MethodHandles.Lookup.ClassOption...)} 作为隐藏类载入本包,
+ * 于是 JIT 可以把转移直接内联进扫描循环. 两者识别出的词素完全相同.
+ * <br>
+ * 编译需要运行时带有 JDK 的编译器 (jdk.compiler 模块), 且本项目的类位于 java.class.path 上;
+ * 不满足时 {@link #getScanner()} 回退到 {@link LexerDFA}.
+ */
+public final class LexerClassGenerator {
+    private static final String PACKAGE = LexerClassGenerator.class.getPackageName();
+    private static final String CLASS_NAME = "GeneratedLexer";
+
+    private static LexemeScanner scanner = null;
+
+    /**
+     * 获得为当前码点文件生成的扫描器, 首次调用时生成并编译, 保证在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @return 生成的扫描器; 无法在当前环境中编译时为 {@link LexerDFA#getInstance()}
+     */
+    public static synchronized LexemeScanner getScanner() {
+        if (scanner == null) {
+            final var dfa = LexerDFA.getInstance();
+            try {
+                scanner = generate(dfa);
+            } catch (RuntimeException e) {
+                System.err.println("Falling back to table-driven lexer: " + e.getMessage());
+                scanner = dfa;
+            }
+        }
+
+        return scanner;
+    }
+
+    /**
+     * 为自动机生成, 编译并载入扫描器类
+     *
+     * @param dfa 词法自动机
+     * @return 扫描器实例
+     */
+    public static LexemeScanner generate(LexerDFA dfa) {
+        final var kinds = acceptedKinds(dfa);
+        final var bytes = SourceCompiler.compile(PACKAGE + "." + CLASS_NAME, generateSource(dfa, kinds));
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, TokenKind[].class));
+            return (LexemeScanner) constructor.invoke(kinds.toArray(TokenKind[]::new));
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to load generated lexer", e);
+        }
+    }
+
+    /**
+     * 生成扫描器的源码
+     *
+     * @param dfa 词法自动机
+     * @return Java 源码
+     */
+    public static String generateSource(LexerDFA dfa) {
+        return generateSource(dfa, acceptedKinds(dfa));
+    }
+
+    /**
+     * 自动机中所有接受状态的类型, 按首次出现的状态排序; 生成的类以其下标引用 TokenKind
+     */
+    private static List<TokenKind> acceptedKinds(LexerDFA dfa) {
+        final var kinds = new ArrayList<TokenKind>();
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            final var kind = dfa.acceptKind(state);
+            if (kind != null && !kinds.contains(kind)) {
+                kinds.add(kind);
+            }
+        }
+        return kinds;
+    }
+
+    private static String generateSource(LexerDFA dfa, List<TokenKind> kinds) {
+        final var code = new StringBuilder();
+        code.append("package ").append(PACKAGE).append(";\n\n");
+        code.append("import java.nio.ByteBuffer;\n\n");
+        code.append("final class ").append(CLASS_NAME).append(" implements LexemeScanner {\n");
+        code.append("    private final TokenKind[] kinds;\n\n");
+        code.append("    ").append(CLASS_NAME).append("(TokenKind[] kinds) {\n");
+        code.append("        this.kinds = kinds;\n");
+        code.append("    }\n\n");
+
+        appendScan(code, dfa, "CharSequence text", "text.charAt(%s)");
+        appendScan(code, dfa, "ByteBuffer buffer", "(buffer.get(%s) & 0xFF)");
+        appendSkip(code, dfa);
+        appendAccept(code, dfa, kinds);
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 生成扫描循环. 字符类与状态转移直接以 switch 表达式写在循环体内, 不经过方法调用, 以免因方法过大而无法被 JIT 内联
+     */
+    private static void appendScan(StringBuilder code, LexerDFA dfa, String parameter, String readFormat) {
+        code.append("    @Override\n");
+        code.append("    public int scan(").append(parameter)
+            .append(", int begin, int end, boolean endOfInput, TokenSink sink) {\n");
+        code.append("        int pos = begin;\n");
+        code.append("        while (pos < end) {\n");
+        code.append("            if (skip(").append(readFormat.formatted("pos")).append(")) {\n");
+        code.append("                pos++;\n");
+        code.append("                continue;\n");
+        code.append("            }\n");
+        code.append("            int state = ").append(LexerDFA.START).append(";\n");
+        code.append("            int cursor = pos;\n");
+        code.append("            int lastKind = -1;\n");
+        code.append("            int lastEnd = pos;\n");
+        code.append("            while (cursor < end) {\n");
+        code.append("                final int c = ").append(readFormat.formatted("cursor")).append(";\n");
+        appendClassOf(code, dfa, "                ");
+        appendNext(code, dfa, "                ");
+        code.append("                if (state == ").append(LexerDFA.DEAD).append(") {\n");
+        code.append("                    break;\n");
+        code.append("                }\n");
+        code.append("                cursor++;\n");
+        code.append("                final int kind = accept(state);\n");
+        code.append("                if (kind >= 0) {\n");
+        code.append("                    lastKind = kind;\n");
+        code.append("                    lastEnd = cursor;\n");
+        code.append("                }\n");
+        code.append("            }\n");
+        code.append("            if (!endOfInput && cursor == end) {\n");
+        code.append("                return pos;\n");
+        code.append("            }\n");
+        code.append("            if (lastKind < 0) {\n");
+        code.append("                pos++;\n");
+        code.append("                continue;\n");
+        code.append("            }\n");
+        code.append("            sink.accept(kinds[lastKind], pos, lastEnd);\n");
+        code.append("            pos = lastEnd;\n");
+        code.append("        }\n");
+        code.append("        return pos;\n");
+        code.append("    }\n\n");
+    }
+
+    private static void appendClassOf(StringBuilder code, LexerDFA dfa, String indent) {
+        // 按字符类分组 ASCII 字符, 最大的一组交给 default 分支
+        final Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int c = 0; c < 128; c++) {
+            groups.computeIfAbsent(dfa.classOf(c), key -> new ArrayList<>()).add(c);
+        }
+        final var largest = groups.entrySet().stream()
+            .max((a, b) -> Integer.compare(a.getValue().size(), b.getValue().size()))
+            .orElseThrow()
+            .getKey();
+
+        code.append(indent).append("final int charClass = switch (c) {\n");
+        for (final var group : groups.entrySet()) {
+            if (!group.getKey().equals(largest)) {
+                code.append(indent).append("    ").append(cases(group.getValue()))
+                    .append(" -> ").append(group.getKey()).append(";\n");
+            }
+        }
+        code.append(indent).append("    default -> c < 128 ? ").append(largest)
+            .append(" : (Character.isLetter(c) ? ").append(dfa.nonAsciiLetterClass())
+            .append(" : ").append(dfa.otherClass()).append(");\n");
+        code.append(indent).append("};\n");
+    }
+
+    private static void appendNext(StringBuilder code, LexerDFA dfa, String indent) {
+        code.append(indent).append("state = switch (state) {\n");
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            // 按目标状态分组, 转移到死状态的交给 default 分支
+            final Map<Integer, List<Integer>> targets = new LinkedHashMap<>();
+            for (int k = 0; k < dfa.classCount(); k++) {
+                final var target = dfa.next(state, k);
+                if (target != LexerDFA.DEAD) {
+                    targets.computeIfAbsent(target, key -> new ArrayList<>()).add(k);
+                }
+            }
+            if (targets.isEmpty()) {
+                continue;
+            }
+
+            code.append(indent).append("    case ").append(state).append(" -> switch (charClass) {\n");
+            for (final var target : targets.entrySet()) {
+                code.append(indent).append("        ").append(cases(target.getValue()))
+                    .append(" -> ").append(target.getKey()).append(";\n");
+            }
+            code.append(indent).append("        default -> ").append(LexerDFA.DEAD).append(";\n");
+            code.append(indent).append("    };\n");
+        }
+        code.append(indent).append("    default -> ").append(LexerDFA.DEAD).append(";\n");
+        code.append(indent).append("};\n");
+    }
+
+    private static void appendSkip(StringBuilder code, LexerDFA dfa) {
+        final var skipChars = new ArrayList<Integer>();
+        for (int c = 0; c < 128; c++) {
+            if (dfa.isSkip(dfa.classOf(c))) {
+                skipChars.add(c);
+            }
+        }
+
+        code.append("    private static boolean skip(int c) {\n");
+        code.append("        return switch (c) {\n");
+        if (!skipChars.isEmpty()) {
+            code.append("            ").append(cases(skipChars)).append(" -> true;\n");
+        }
+        code.append("            default -> false;\n");
+        code.append("        };\n");
+        code.append("    }\n\n");
+    }
+
+    private static void appendAccept(StringBuilder code, LexerDFA dfa, List<TokenKind> kinds) {
+        code.append("    private static int accept(int state) {\n");
+        code.append("        return switch (state) {\n");
+        for (int state = 0; state < dfa.stateCount(); state++) {
+            final var kind = dfa.acceptKind(state);
+            if (kind != null) {
+                code.append("            case ").append(state).append(" -> ").append(kinds.indexOf(kind))
+                    .append("; // ").append(kind.getIdentifier()).append("\n");
+            }
+        }
+        code.append("            default -> -1;\n");
+        code.append("        };\n");
+        code.append("    }\n");
+    }
+
+    private static String cases(List<Integer> labels) {
+        return "case " + labels.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,457 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表驱动的词法自动机
+ * <br>
+ * 自动机根据码点文件 (coding_map.csv) 中读到的 TokenKind 自动构造: 名字全为字母的类型视为关键字, id 与 IntConst
+ * 分别视为标识符与整数常量, 其余类型视为按字面拼写的标点 (名字与拼写不同的标点, 如 Semicolon, 记录在 {@code SPELLINGS} 中).
+ * <br>
+ * 构造分为三步:
+ * <ol>
+ *     <li>按关键字与标点的拼写建立字典树, 并在其上叠加标识符与整数常量的状态, 得到一个以单个字符为列的确定自动机</li>
+ *     <li>把在所有状态下转移都相同的字符合并为同一个字符类, 压缩表的列数</li>
+ *     <li>以接受的 TokenKind 为初始划分, 反复细分等价状态 (Moore 算法), 得到最小化的状态集</li>
+ * </ol>
+ * 最终得到一张 "状态 × 字符类 -> 状态" 的 int 表, 以及每个状态接受的 TokenKind. 扫描过程只在下标上移动, 不为每个字符分配任何对象.
+ * <br>
+ * 状态 0 恒为死状态, 状态 1 恒为起始状态. 与原先的手写实现一致, 空白符被跳过, 无法识别的字符被忽略.
+ */
+public final class LexerDFA implements LexemeScanner {
+    /**
+     * 死状态, 进入该状态意味着当前词素已无法再延长
+     */
+    public static final int DEAD = 0;
+
+    /**
+     * 起始状态
+     */
+    public static final int START = 1;
+
+    private static LexerDFA instance = null;
+
+    /**
+     * 获得根据当前码点文件构造的自动机, 保证在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @return 自动机
+     */
+    public static synchronized LexerDFA getInstance() {
+        if (instance == null) {
+            instance = new LexerDFA(TokenKind.allAllowedTokenKinds());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @param c 字符
+     * @return 该字符所属的字符类
+     */
+    public int classOf(int c) {
+        if (c < ASCII_SIZE) {
+            return asciiClass[c];
+        }
+
+        return Character.isLetter(c) ? nonAsciiLetterClass : otherClass;
+    }
+
+    /**
+     * @param state     当前状态
+     * @param charClass 读入字符的字符类
+     * @return 转移到的状态
+     */
+    public int next(int state, int charClass) {
+        return transitions[state * classCount + charClass];
+    }
+
+    /**
+     * @param state 状态
+     * @return 该状态接受的 TokenKind, 非接受状态返回 null
+     */
+    public TokenKind acceptKind(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * @param charClass 字符类
+     * @return 该字符类是否为应被跳过的空白符
+     */
+    public boolean isSkip(int charClass) {
+        return skip[charClass];
+    }
+
+    /**
+     * @param kind 词素类型
+     * @return 该类型的 Token 是否需要携带词素文本 (标识符与整数常量)
+     */
+    public boolean carriesText(TokenKind kind) {
+        return kind == identifierKind || kind == intConstKind;
+    }
+
+    /**
+     * @param kind 词素类型
+     * @return 该类型是否为标识符, 标识符需要加入符号表
+     */
+    public boolean isIdentifier(TokenKind kind) {
+        return kind == identifierKind;
+    }
+
+    /**
+     * @return 标识符对应的 TokenKind, 码点文件中没有时为 null
+     */
+    public TokenKind identifierKind() {
+        return identifierKind;
+    }
+
+    /**
+     * @return 整数常量对应的 TokenKind, 码点文件中没有时为 null
+     */
+    public TokenKind intConstKind() {
+        return intConstKind;
+    }
+
+    /**
+     * @return 最长关键字的长度; 比它更长的字母串必然是标识符
+     */
+    public int maxKeywordLength() {
+        return maxKeywordLength;
+    }
+
+    /**
+     * @return 非 ASCII 字母所属的字符类
+     */
+    int nonAsciiLetterClass() {
+        return nonAsciiLetterClass;
+    }
+
+    /**
+     * @return 其余非 ASCII 字符所属的字符类
+     */
+    int otherClass() {
+        return otherClass;
+    }
+
+    public int stateCount() {
+        return accepting.length;
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * 在 text 的 [begin, end) 区间上按最长匹配原则识别词素, 每识别一个词素就调用一次 sink
+     *
+     * @param text       源文本
+     * @param begin      起始下标
+     * @param end        结束下标
+     * @param endOfInput end 是否就是输入的末尾. 若不是, 则扫描会在一个可能被截断的词素之前停下
+     * @param sink       词素回调
+     * @return 扫描停止的位置; 若 endOfInput 为 false, 该位置之后的内容需要等更多输入到来后重新扫描
+     */
+    @Override
+    public int scan(CharSequence text, int begin, int end, boolean endOfInput, TokenSink sink) {
+        int pos = begin;
+        while (pos < end) {
+            final int first = classOf(text.charAt(pos));
+            if (skip[first]) {
+                pos++;
+                continue;
+            }
+
+            int state = START;
+            int cursor = pos;
+            int lastAccept = DEAD;
+            int lastEnd = pos;
+            while (cursor < end) {
+                state = transitions[state * classCount + classOf(text.charAt(cursor))];
+                if (state == DEAD) {
+                    break;
+                }
+                cursor++;
+                if (accepting[state] != null) {
+                    lastAccept = state;
+                    lastEnd = cursor;
+                }
+            }
+
+            if (!endOfInput && cursor == end) {
+                // 词素可能在缓冲区末尾被截断, 留给下一次扫描
+                return pos;
+            }
+
+            if (lastAccept == DEAD) {
+                // 与原实现保持一致: 忽略无法识别的字符
+                pos++;
+                continue;
+            }
+
+            sink.accept(accepting[lastAccept], pos, lastEnd);
+            pos = lastEnd;
+        }
+
+        return pos;
+    }
+
+    /**
+     * 与 {@link #scan(CharSequence, int, int, boolean, TokenSink)} 相同, 但直接在字节缓冲区上扫描 ASCII 输入,
+     * 使用绝对下标读取, 不改变缓冲区的 position 与 limit
+     *
+     * @param buffer     源字节
+     * @param begin      起始下标
+     * @param end        结束下标
+     * @param endOfInput end 是否就是输入的末尾
+     * @param sink       词素回调
+     * @return 扫描停止的位置
+     */
+    @Override
+    public int scan(ByteBuffer buffer, int begin, int end, boolean endOfInput, TokenSink sink) {
+        int pos = begin;
+        while (pos < end) {
+            final int first = classOf(buffer.get(pos) & 0xFF);
+            if (skip[first]) {
+                pos++;
+                continue;
+            }
+
+            int state = START;
+            int cursor = pos;
+            int lastAccept = DEAD;
+            int lastEnd = pos;
+            while (cursor < end) {
+                state = transitions[state * classCount + classOf(buffer.get(cursor) & 0xFF)];
+                if (state == DEAD) {
+                    break;
+                }
+                cursor++;
+                if (accepting[state] != null) {
+                    lastAccept = state;
+                    lastEnd = cursor;
+                }
+            }
+
+            if (!endOfInput && cursor == end) {
+                return pos;
+            }
+
+            if (lastAccept == DEAD) {
+                pos++;
+                continue;
+            }
+
+            sink.accept(accepting[lastAccept], pos, lastEnd);
+            pos = lastEnd;
+        }
+
+        return pos;
+    }
+
+    //==================== 以下为自动机构造 ==============================//
+
+    private static final String IDENTIFIER = "id";
+    private static final String INT_CONST = "IntConst";
+
+    // 码点文件中名字与实际拼写不同的标点
+    private static final Map<String, String> SPELLINGS = Map.of("Semicolon", ";");
+
+    private static final String WHITESPACES = " \t\r\n";
+
+    // 构造时使用的列: 128 个 ASCII 字符, 加上 "非 ASCII 字母" 与 "其它字符" 两列
+    private static final int ASCII_SIZE = 128;
+    private static final int NON_ASCII_LETTER = ASCII_SIZE;
+    private static final int OTHER = ASCII_SIZE + 1;
+    private static final int COLUMNS = ASCII_SIZE + 2;
+
+    private final TokenKind identifierKind;
+    private final TokenKind intConstKind;
+    private final int maxKeywordLength;
+
+    private final byte[] asciiClass = new byte[ASCII_SIZE];
+    private final int nonAsciiLetterClass;
+    private final int otherClass;
+    private final int classCount;
+    private final boolean[] skip;
+
+    private final int[] transitions;
+    private final TokenKind[] accepting;
+
+    private LexerDFA(Map<String, TokenKind> kinds) {
+        final var orderedKinds = kinds.values().stream()
+            .filter(kind -> kind != TokenKind.eof())
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+
+        this.identifierKind = kinds.get(IDENTIFIER);
+        this.intConstKind = kinds.get(INT_CONST);
+
+        // 第一步: 以单个字符为列构造自动机
+        final var rows = new ArrayList<int[]>();
+        final var accepts = new ArrayList<TokenKind>();
+        newState(rows, accepts, null); // DEAD
+        newState(rows, accepts, null); // START
+
+        final var trieNodes = new ArrayList<Integer>();
+        var longestKeyword = 0;
+        final var idState = identifierKind == null ? DEAD : newState(rows, accepts, identifierKind);
+        final var intState = intConstKind == null ? DEAD : newState(rows, accepts, intConstKind);
+
+        for (final var kind : orderedKinds) {
+            if (kind == identifierKind || kind == intConstKind) {
+                continue;
+            }
+
+            final var id = kind.getIdentifier();
+            final var spelling = SPELLINGS.getOrDefault(id, id);
+            final var isKeyword = spelling.chars().allMatch(LexerDFA::isLetterColumn);
+            if (!isKeyword && spelling.chars().anyMatch(c -> isLetterColumn(c) || isDigitColumn(c))) {
+                throw new RuntimeException("Unsupported spelling of token kind: " + id);
+            }
+            if (isKeyword) {
+                longestKeyword = Math.max(longestKeyword, spelling.length());
+            }
+
+            // 关键字的前缀本身也是合法的标识符, 标点的前缀则不一定被接受
+            final var prefixKind = isKeyword ? identifierKind : null;
+            int state = START;
+            for (int i = 0; i < spelling.length(); i++) {
+                final var c = spelling.charAt(i);
+                if (rows.get(state)[c] == DEAD) {
+                    final var created = newState(rows, accepts, prefixKind);
+                    rows.get(state)[c] = created;
+                    if (isKeyword) {
+                        trieNodes.add(created);
+                    }
+                }
+                state = rows.get(state)[c];
+            }
+            accepts.set(state, kind);
+        }
+
+        // 未落在关键字字典树上的字母回落到标识符状态, 数字回落到整数常量状态.
+        // 与原先的手写实现一致, 标识符只由字母组成, 故 a1 识别为 id(a) IntConst(1), int1 识别为 int IntConst(1)
+        for (int c = 0; c < COLUMNS; c++) {
+            if (isLetterColumn(c)) {
+                fillIfDead(rows.get(START), c, idState);
+                fillIfDead(rows.get(idState), c, idState);
+                for (final var node : trieNodes) {
+                    fillIfDead(rows.get(node), c, idState);
+                }
+            } else if (isDigitColumn(c)) {
+                fillIfDead(rows.get(START), c, intState);
+                fillIfDead(rows.get(intState), c, intState);
+            }
+        }
+        // 死状态的所有转移恒回到自身
+        Arrays.fill(rows.get(DEAD), DEAD);
+
+        // 第二步: 合并行为相同的列
+        final var columnClass = new int[COLUMNS];
+        final var classSignatures = new HashMap<List<Integer>, Integer>();
+        for (int c = 0; c < COLUMNS; c++) {
+            final var signature = new ArrayList<Integer>(rows.size() + 1);
+            signature.add(isSkipColumn(c) ? 1 : 0);
+            for (final var row : rows) {
+                signature.add(row[c]);
+            }
+            final var nextClass = classSignatures.size();
+            columnClass[c] = classSignatures.computeIfAbsent(signature, key -> nextClass);
+        }
+        final var classes = classSignatures.size();
+        final var representative = new int[classes];
+        final var skipClasses = new boolean[classes];
+        for (int c = COLUMNS - 1; c >= 0; c--) {
+            representative[columnClass[c]] = c;
+            skipClasses[columnClass[c]] = isSkipColumn(c);
+        }
+
+        // 第三步: Moore 算法最小化状态
+        final var stateCount = rows.size();
+        var block = new int[stateCount];
+        final var kindBlocks = new HashMap<TokenKind, Integer>();
+        for (int s = 0; s < stateCount; s++) {
+            final var kind = accepts.get(s);
+            block[s] = kind == null ? 0 : kindBlocks.computeIfAbsent(kind, key -> kindBlocks.size() + 1);
+        }
+        var blockCount = kindBlocks.size() + 1;
+        while (true) {
+            final var signatures = new HashMap<List<Integer>, Integer>();
+            final var refined = new int[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                final var signature = new ArrayList<Integer>(classes + 1);
+                signature.add(block[s]);
+                for (int k = 0; k < classes; k++) {
+                    signature.add(block[rows.get(s)[representative[k]]]);
+                }
+                final var nextBlock = signatures.size();
+                refined[s] = signatures.computeIfAbsent(signature, key -> nextBlock);
+            }
+            block = refined;
+            if (signatures.size() == blockCount) {
+                break;
+            }
+            blockCount = signatures.size();
+        }
+
+        // 重新编号, 使死状态为 0, 起始状态为 1, 其余状态保持首次出现的顺序
+        final var renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        renumber[block[DEAD]] = DEAD;
+        renumber[block[START]] = START;
+        var nextIndex = 2;
+        for (int s = 0; s < stateCount; s++) {
+            if (renumber[block[s]] == -1) {
+                renumber[block[s]] = nextIndex++;
+            }
+        }
+
+        this.maxKeywordLength = longestKeyword;
+        this.classCount = classes;
+        this.transitions = new int[blockCount * classes];
+        this.accepting = new TokenKind[blockCount];
+        for (int s = 0; s < stateCount; s++) {
+            final var from = renumber[block[s]];
+            accepting[from] = accepts.get(s);
+            for (int k = 0; k < classes; k++) {
+                transitions[from * classes + k] = renumber[block[rows.get(s)[representative[k]]]];
+            }
+        }
+
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            asciiClass[c] = (byte) columnClass[c];
+        }
+        this.nonAsciiLetterClass = columnClass[NON_ASCII_LETTER];
+        this.otherClass = columnClass[OTHER];
+        this.skip = skipClasses;
+    }
+
+    private static int newState(List<int[]> rows, List<TokenKind> accepts, TokenKind kind) {
+        rows.add(new int[COLUMNS]);
+        accepts.add(kind);
+        return rows.size() - 1;
+    }
+
+    private static void fillIfDead(int[] row, int column, int target) {
+        if (row[column] == DEAD) {
+            row[column] = target;
+        }
+    }
+
+    private static boolean isLetterColumn(int c) {
+        return c == NON_ASCII_LETTER || (c < ASCII_SIZE && Character.isLetter(c));
+    }
+
+    private static boolean isDigitColumn(int c) {
+        return c < ASCII_SIZE && Character.isDigit(c);
+    }
+
+    private static boolean isSkipColumn(int c) {
+        return c < ASCII_SIZE && WHITESPACES.indexOf(c) >= 0;
+    }
+}
@@ -1,12 +1,23 @@
 package cn.edu.hitsz.compiler.lexer;
 
-import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.CompilerOptions;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.StreamSupport;
 
 
@@ -22,7 +33,10 @@ import java.util.stream.StreamSupport;
 public class LexicalAnalyzer {
 
     private final SymbolTable symbolTable;
-    private static List<Token> tokens = new ArrayList<>();//结果
+    // 词法分析的全部状态都属于实例本身, 不同实例可以在不同线程中同时运行
+    private List<Token> tokens = new ArrayList<>();//结果
+    // 紧凑模式下的结果, 仅在 runCompact 之后非空
+    private TokenBuffer compactTokens = null;
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
@@ -34,111 +48,370 @@ public class LexicalAnalyzer {
      *
      * @param path 路径
      */
-    private static String text;//读取的完整文本
-    private static int begin;//首指针
-    private static int check;//指针
-
-    private static final List<Character> blank = Arrays.asList(' ', '\t', '\r', '\n');
-    //
+    private String text;//读取的完整文本
 
     public void loadFile(String path) {
         // TODO: 词法分析前的缓冲区实现
         // 可自由实现各类缓冲区
         // 或直接采用完整读入方法
          text = FileUtils.readFile(path);
+         mapped = null;
+    }
+
+    // 内存映射的源文件, 仅在 loadFileMapped 之后非空
+    private ByteBuffer mapped;
+
+    /**
+     * 将源文件映射到内存中, 随后的 run 直接扫描其中的 ASCII 字节
+     * <br>
+     * 文件内容既不解码为 UTF-16 也不复制到堆上, 只有标识符与整数常量这类需要进入符号表或 token 输出的词素才会构造 String.
+     *
+     * @param path 路径
+     */
+    public void loadFileMapped(String path) {
+        mapped = FileUtils.mapFile(path);
+        text = null;
     }
 
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
+     * <br>
+     * 扫描由 {@link LexerDFA} 的状态转移表驱动, 关键字与标点直接映射到自动机中已解析好的 TokenKind,
+     * 整数常量才会截取词素文本, 标识符则直接在符号表中驻留, 重复出现的标识符共享同一个 String 与编号.
      */
     public void run() {
-        // TODO: 自动机实现的词法分析过程
-        int fileLength=text.length(); //读取长度
-
-        char locate = text.charAt(check);
-        while(check < fileLength) {//跳过空白
-            locate = text.charAt(check);
-            while (locate == ' ' || locate == '\n' || locate == '\t' || locate == '\r') {
-                check += 1;  //向后扫描
-                locate = text.charAt(check);
+        // 重复调用 run 时不应保留上一次的结果
+        tokens = new ArrayList<>();
+        compactTokens = null;
+        lexRange(0, sourceLength(), tokens, symbolTable);
+        tokens.add(Token.eof());
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上并行分块执行词法分析, 结果与 {@link #run()} 完全相同
+     *
+     * @param chunkCount 分块数量
+     * @see #runParallel(int, Executor)
+     */
+    public void runParallel(int chunkCount) {
+        runParallel(chunkCount, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行分块执行词法分析
+     * <br>
+     * 源语言中没有跨越空白符的词素, 所以在空白符处把缓冲区切开不会改变任何词素的识别结果. 分三步进行:
+     * <ol>
+     *     <li>各块在 executor 上同时扫描, 各自把标识符驻留在块内独立的符号表中</li>
+     *     <li>在当前线程中按块的顺序把各块符号表中的标识符依次驻留到真正的符号表, 并为每个块内编号构造一个携带全局编号的 Token.
+     *     这一步只与各块中不同标识符的个数成正比; 真正的符号表只在当前线程中被修改, 故无需加锁, 且编号的分配顺序与顺序扫描相同</li>
+     *     <li>各块再在 executor 上同时把自己的标识符 Token 替换为上一步构造的 Token</li>
+     * </ol>
+     * 结果不再拼接为一个列表, 而是按预先算好的各块起始下标组成的视图, 末尾补上 EOF.
+     * 最终的词法单元序列与符号表都与 {@link #run()} 完全相同, 只是同一块中同一标识符的各次出现共享同一个 Token.
+     *
+     * @param chunkCount 分块数量
+     * @param executor   执行各块扫描的 Executor
+     */
+    public void runParallel(int chunkCount, Executor executor) {
+        final var boundaries = splitAtWhitespace(sourceLength(), chunkCount);
+
+        final var lexed = new ArrayList<CompletableFuture<Chunk>>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            final var begin = boundaries[i];
+            final var end = boundaries[i + 1];
+            lexed.add(CompletableFuture.supplyAsync(() -> {
+                final var chunk = new Chunk();
+                lexRange(begin, end, chunk.tokens, chunk.symbols);
+                return chunk;
+            }, executor));
+        }
+        final var chunks = joinAll(lexed);
+
+        final var identifierKind = LexerDFA.getInstance().identifierKind();
+        final var remapped = new ArrayList<CompletableFuture<Chunk>>(chunkCount);
+        for (final var chunk : chunks) {
+            // 块内编号按首次出现的顺序分配, 依次驻留即与顺序扫描的编号一致
+            final var globalTokens = new Token[chunk.symbols.size()];
+            for (int id = 0; id < globalTokens.length; id++) {
+                final var text = chunk.symbols.get(id).getText();
+                final var entry = symbolTable.get(symbolTable.intern(text, 0, text.length()));
+                globalTokens[id] = Token.identifier(identifierKind, entry.getText(), entry.getId());
             }
-            if (Character.isAlphabetic(locate)) {//开始扫描字母
-                check += 1; //向后扫描
-                String loop = "";
-                loop = loop + locate;
-                locate = text.charAt(check);
-                while (Character.isAlphabetic(locate)) {
-                    loop = loop + locate;
-                    check += 1;
-                    locate = text.charAt(check);
+            remapped.add(CompletableFuture.supplyAsync(() -> {
+                final var list = chunk.tokens;
+                for (int i = 0; i < list.size(); i++) {
+                    final var token = list.get(i);
+                    if (token.getSymbolId() >= 0) {
+                        list.set(i, globalTokens[token.getSymbolId()]);
+                    }
                 }
-                check -= 1; //回退
-                //关键字判断
-                if ("int".equals(loop)) {
-                    tokens.add(Token.simple("int"));
-                } else if ("return".equals(loop)) {
-                    tokens.add(Token.simple("return"));
+                return chunk;
+            }, executor));
+        }
+
+        tokens = new ChunkedTokens(joinAll(remapped));
+        compactTokens = null;
+    }
+
+    private static List<Chunk> joinAll(List<CompletableFuture<Chunk>> futures) {
+        final var chunks = new ArrayList<Chunk>(futures.size());
+        for (final var future : futures) {
+            try {
+                chunks.add(future.join());
+            } catch (CompletionException e) {
+                throw new RuntimeException("Parallel lexing failed", e.getCause());
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 执行词法分析, 但把结果存为紧凑的 {@link TokenBuffer} 而非 Token 列表
+     * <br>
+     * 每个词法单元只记录类型码点与词素在源缓冲区中的位置, 随后 {@link #getTokens()} 返回的即是该缓冲区的视图.
+     * 符号表的维护与 {@link #run()} 相同.
+     */
+    public void runCompact() {
+        final var dfa = LexerDFA.getInstance();
+        final TokenBuffer buffer;
+        if (mapped != null) {
+            final var source = mapped;
+            buffer = new TokenBuffer(source, symbolTable);
+            scanBytes(source, 0, source.limit(), true, (kind, begin, end) -> {
+                if (dfa.isIdentifier(kind)) {
+                    buffer.add(kind, begin, end, symbolTable.intern(source, begin, end));
                 } else {
-                    tokens.add(Token.normal("id", loop));
-                    if (!symbolTable.has(loop)) {
-                        symbolTable.add(loop);
-                    }
+                    buffer.add(kind, begin, end);
                 }
-            } else if (Character.isDigit(locate)) {//第一个是数字
-                String loop = "";
-                loop = loop + locate;
-                check += 1;
-                locate = text.charAt(check);
-                while (Character.isDigit(locate)) {
-                    loop = loop + locate;
-                    check += 1;
-                    locate = text.charAt(check);
+            });
+            buffer.add(TokenKind.eof(), source.limit(), source.limit());
+        } else {
+            final var source = text;
+            buffer = new TokenBuffer(source, symbolTable);
+            scanner().scan(source, 0, source.length(), true, (kind, begin, end) -> {
+                if (dfa.isIdentifier(kind)) {
+                    buffer.add(kind, begin, end, symbolTable.intern(source, begin, end));
+                } else {
+                    buffer.add(kind, begin, end);
                 }
-                tokens.add(Token.normal("IntConst", loop));
-                check -= 1;
-            } else {
-                //标识符
-                switch (locate) {
-                    case '=':
-                        check++;
-                        locate = text.charAt(check);
-                        if (locate == '=') {
-                            tokens.add(Token.simple("=="));
-                        } else {
-                            tokens.add(Token.simple("="));
-                        }
-                        break;
-                    case ',':
-                        tokens.add(Token.simple(","));
-                        break;
-                    case ';':
-                        tokens.add(Token.simple("Semicolon"));
-                        break;
-                    case '+':
-                        tokens.add(Token.simple("+"));
-                        break;
-                    case '-':
-                        tokens.add(Token.simple("-"));
-                        break;
-                    case '*':
-                        tokens.add(Token.simple("*"));
-                        break;
-                    case '/':
-                        tokens.add(Token.simple("/"));
-                        break;
-                    case '(':
-                        tokens.add(Token.simple("("));
-                        break;
-                    case ')':
-                        tokens.add(Token.simple(")"));
-                        break;
-                    default: break;
+            });
+            buffer.add(TokenKind.eof(), source.length(), source.length());
+        }
+
+        compactTokens = buffer;
+        tokens = new ArrayList<>();
+    }
+
+    /**
+     * 获得紧凑模式下的词法分析结果, 保证在调用了 runCompact 方法之后调用
+     *
+     * @return 紧凑的词法单元流
+     */
+    public TokenBuffer getTokenBuffer() {
+        if (compactTokens == null) {
+            throw new RuntimeException("Compact tokens are only available after runCompact");
+        }
+        return compactTokens;
+    }
+
+    /**
+     * 并行词法分析中单个块的结果
+     */
+    private static class Chunk {
+        private final List<Token> tokens = new ArrayList<>();
+        // 块内独立的符号表, 只用于驻留标识符并记录其首次出现的顺序
+        private final SymbolTable symbols = new SymbolTable();
+    }
+
+    /**
+     * 依次由各块的词法单元组成的只读视图, 末尾补上 EOF
+     */
+    private static class ChunkedTokens extends AbstractList<Token> implements RandomAccess {
+        private final List<Token>[] parts;
+        // 第 i 块的第一个词法单元在视图中的下标, 最后一项为 EOF 的下标
+        private final int[] offsets;
+
+        @SuppressWarnings("unchecked")
+        private ChunkedTokens(List<Chunk> chunks) {
+            this.parts = new List[chunks.size()];
+            this.offsets = new int[chunks.size() + 1];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = chunks.get(i).tokens;
+                offsets[i + 1] = offsets[i] + parts[i].size();
+            }
+        }
+
+        @Override
+        public Token get(int index) {
+            Objects.checkIndex(index, size());
+            if (index == offsets[parts.length]) {
+                return Token.eof();
+            }
+            // 二分查找 offsets[part] <= index < offsets[part + 1] 的块, 空块的两端相等, 不会被选中
+            int low = 0;
+            int high = parts.length - 1;
+            while (low < high) {
+                final var mid = (low + high + 1) >>> 1;
+                if (offsets[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
                 }
             }
-            check += 1;
+            return parts[low].get(index - offsets[low]);
         }
-        tokens.add(Token.eof());
+
+        @Override
+        public int size() {
+            return offsets[parts.length] + 1;
+        }
+    }
+
+    /**
+     * 把 [0, length) 切成 chunkCount 块, 除首尾外每个切分点都从等分点向后移动到第一个空白符上
+     *
+     * @return 长度为 chunkCount + 1 的切分点数组
+     */
+    private int[] splitAtWhitespace(int length, int chunkCount) {
+        if (chunkCount < 1) {
+            throw new RuntimeException("Chunk count must be positive");
+        }
+
+        final var dfa = LexerDFA.getInstance();
+        final var boundaries = new int[chunkCount + 1];
+        for (int i = 1; i < chunkCount; i++) {
+            var pos = Math.max((int) ((long) length * i / chunkCount), boundaries[i - 1]);
+            while (pos < length && !dfa.isSkip(dfa.classOf(charAt(pos)))) {
+                pos++;
+            }
+            boundaries[i] = pos;
+        }
+        boundaries[chunkCount] = length;
+        return boundaries;
+    }
+
+    /**
+     * 扫描源程序的 [begin, end) 区间, 把词法单元追加到 out 中, 并把标识符驻留到 symbols 中
+     */
+    private void lexRange(int begin, int end, List<Token> out, SymbolTable symbols) {
+        final var dfa = LexerDFA.getInstance();
+        if (mapped != null) {
+            final var source = mapped;
+            final var lexemes = new AsciiLexemes();
+            scanBytes(source, begin, end, true, (kind, lexemeBegin, lexemeEnd) -> {
+                if (!dfa.carriesText(kind)) {
+                    out.add(Token.simple(kind));
+                } else if (dfa.isIdentifier(kind)) {
+                    final var entry = symbols.get(symbols.intern(source, lexemeBegin, lexemeEnd));
+                    out.add(Token.identifier(kind, entry.getText(), entry.getId()));
+                } else {
+                    out.add(Token.normal(kind, lexemes.read(source, lexemeBegin, lexemeEnd)));
+                }
+            });
+        } else {
+            final var source = text;
+            scanner().scan(source, begin, end, true, (kind, lexemeBegin, lexemeEnd) -> {
+                if (!dfa.carriesText(kind)) {
+                    out.add(Token.simple(kind));
+                } else if (dfa.isIdentifier(kind)) {
+                    final var entry = symbols.get(symbols.intern(source, lexemeBegin, lexemeEnd));
+                    out.add(Token.identifier(kind, entry.getText(), entry.getId()));
+                } else {
+                    out.add(Token.normal(kind, source.substring(lexemeBegin, lexemeEnd)));
+                }
+            });
+        }
+    }
+
+    /**
+     * 按 {@link CompilerOptions#GENERATED_LEXER} 选择生成的专用扫描器或表驱动的自动机
+     */
+    static LexemeScanner scanner() {
+        return CompilerOptions.GENERATED_LEXER ? LexerClassGenerator.getScanner() : LexerDFA.getInstance();
+    }
+
+    /**
+     * 扫描字节输入, {@link CompilerOptions#SIMD_LEXER} 打开时使用向量化的实现
+     *
+     * @return 扫描停止的位置, 见 {@link LexemeScanner#scan(ByteBuffer, int, int, boolean, TokenSink)}
+     */
+    static int scanBytes(ByteBuffer source, int begin, int end, boolean endOfInput, TokenSink sink) {
+        final var vector = CompilerOptions.SIMD_LEXER ? vectorScanner() : null;
+        return (vector != null ? vector : scanner()).scan(source, begin, end, endOfInput, sink);
+    }
+
+    private static final String VECTOR_SCANNER = "cn.edu.hitsz.compiler.lexer.VectorScanner";
+    private static boolean vectorScannerLoaded = false;
+    private static LexemeScanner vectorScanner = null;
+
+    /**
+     * 向量化的扫描器位于单独的源码目录 src-vector 中, 编译它需要 jdk.incubator.vector 模块, 因此这里按类名反射加载,
+     * 使默认的构建不依赖该模块. 未编译该目录时返回 null, 由调用者回退到标量扫描
+     *
+     * @return 向量化的扫描器, 或 null
+     */
+    private static synchronized LexemeScanner vectorScanner() {
+        if (!vectorScannerLoaded) {
+            vectorScannerLoaded = true;
+            try {
+                vectorScanner = (LexemeScanner) Class.forName(VECTOR_SCANNER).getMethod("getInstance").invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Falling back to scalar lexer: " + e);
+            }
+        }
+
+        return vectorScanner;
+    }
+
+    private int sourceLength() {
+        return mapped != null ? mapped.limit() : text.length();
+    }
+
+    private int charAt(int pos) {
+        return mapped != null ? mapped.get(pos) & 0xFF : text.charAt(pos);
+    }
+
+    /**
+     * 从映射区中取出 ASCII 词素. 词素通常很短, 复用同一个数组拷贝字节
+     */
+    private static class AsciiLexemes {
+        private byte[] scratch = new byte[64];
+
+        private String read(ByteBuffer source, int begin, int end) {
+            final var length = end - begin;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            source.get(begin, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * 以流式方式对源程序进行词法分析
+     * <br>
+     * 与 {@code loadFile} + {@code run} 不同, 该方法不会一次性读入整个文件, 也不会生成完整的 token 列表,
+     * 而是返回一个迭代器, 每取出一个词法单元才会按需从通道中读入更多内容. 标识符在被取出时才加入符号表.
+     *
+     * @param channel 源程序所在的通道, 读到末尾后会被关闭
+     * @return 按需产生词法单元的迭代器, 最后一个词法单元为 EOF
+     */
+    public Iterator<Token> stream(ReadableByteChannel channel) {
+        return new StreamingLexer(channel, symbolTable, CompilerOptions.STREAMING_WINDOW_SIZE);
+    }
+
+    /**
+     * 以推送方式对源程序进行词法分析
+     * <br>
+     * 源程序由调用者分块送入返回的词法分析器, 每识别出一个词法单元就交给 consumer, 标识符同样加入符号表.
+     *
+     * @param consumer 词法单元的消费者, 最后收到的词法单元为 EOF
+     * @return 等待送入源程序的词法分析器
+     */
+    public PushLexer push(Consumer<Token> consumer) {
+        return new PushLexer(symbolTable, consumer);
     }
 
     /**
@@ -151,6 +424,9 @@ public class LexicalAnalyzer {
         // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
         // 亦可以直接分析完整个文件
         // 总之实现过程能转化为一列表即可
+        if (compactTokens != null) {
+            return compactTokens;
+        }
         return  tokens;
     }
 
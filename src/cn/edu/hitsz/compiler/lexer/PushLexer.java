@@ -0,0 +1,152 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 推送式的词法分析器
+ * <br>
+ * 源程序以任意大小的块通过 {@link #feed(ByteBuffer)} 送入, 每识别出一个完整的词法单元就立即交给消费者, 输入结束时调用
+ * {@link #finish()}. 与 {@link StreamingLexer} 主动从通道中拉取数据不同, 该类适合数据由外部 (如网络连接) 推入的场景.
+ * <br>
+ * 块内部的完整词素直接在块上扫描; 块末尾可能被截断的词素连同自动机的当前状态保存下来, 下一块到来时从该状态继续逐字节推进,
+ * 直到这个词素被确定为止. 由于最长匹配可能需要回退, 保存的是自词素开头起读到的所有字节, 回退的部分会重新送入自动机.
+ * <br>
+ * 与 {@link LexicalAnalyzer#run()} 一样, 标识符会加入符号表, 输入结束后产生一个 EOF 词法单元.
+ */
+public class PushLexer {
+    /**
+     * @param symbolTable 符号表
+     * @param consumer    词法单元的消费者
+     */
+    public PushLexer(SymbolTable symbolTable, Consumer<Token> consumer) {
+        this.symbolTable = symbolTable;
+        this.consumer = consumer;
+        this.dfa = LexerDFA.getInstance();
+    }
+
+    /**
+     * 送入一块源程序, 读取 chunk 中剩余的全部字节
+     *
+     * @param chunk 源程序的一块, 方法返回后其 position 等于 limit
+     */
+    public void feed(ByteBuffer chunk) {
+        if (finished) {
+            throw new RuntimeException("Cannot feed a finished lexer");
+        }
+
+        var pos = chunk.position();
+        final var limit = chunk.limit();
+        // 先把上一块末尾未完成的词素推进到确定为止
+        while (length > 0 && pos < limit) {
+            step(chunk.get(pos++));
+        }
+
+        if (pos < limit) {
+            final var stop = LexicalAnalyzer.scanBytes(chunk, pos, limit, false,
+                (kind, begin, end) -> emit(kind, chunk, begin, end));
+            // 块末尾可能被截断的词素, 保存其字节与自动机状态
+            for (int i = stop; i < limit; i++) {
+                step(chunk.get(i));
+            }
+        }
+
+        chunk.position(limit);
+    }
+
+    /**
+     * 结束输入: 确定最后一个未完成的词素并产生 EOF
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+
+        while (length > 0) {
+            resolve();
+        }
+        consumer.accept(Token.eof());
+        finished = true;
+    }
+
+    private final SymbolTable symbolTable;
+    private final Consumer<Token> consumer;
+    private final LexerDFA dfa;
+
+    // 当前词素自开头起读到的字节, 以及在其上运行的自动机
+    private byte[] pending = new byte[64];
+    private ByteBuffer pendingView = ByteBuffer.wrap(pending);
+    private int length = 0;
+    private int state = LexerDFA.START;
+    private int lastAccept = LexerDFA.DEAD;
+    private int lastEnd = 0;
+    private boolean finished = false;
+
+    /**
+     * 把一个字节送入自动机, 自动机进入死状态时确定当前词素
+     */
+    private void step(byte b) {
+        final var charClass = dfa.classOf(b & 0xFF);
+        if (length == 0 && dfa.isSkip(charClass)) {
+            return;
+        }
+
+        if (length == pending.length) {
+            pending = Arrays.copyOf(pending, length * 2);
+            pendingView = ByteBuffer.wrap(pending);
+        }
+        pending[length++] = b;
+
+        state = dfa.next(state, charClass);
+        if (state == LexerDFA.DEAD) {
+            resolve();
+        } else if (dfa.acceptKind(state) != null) {
+            lastAccept = state;
+            lastEnd = length;
+        }
+    }
+
+    /**
+     * 以最后一次接受的位置确定词素, 其后读过的字节重新送入自动机
+     */
+    private void resolve() {
+        final int consumed;
+        if (lastAccept == LexerDFA.DEAD) {
+            // 与其它扫描方式一致: 忽略无法识别的字符
+            consumed = 1;
+        } else {
+            emit(dfa.acceptKind(lastAccept), pendingView, 0, lastEnd);
+            consumed = lastEnd;
+        }
+
+        final var rest = Arrays.copyOfRange(pending, consumed, length);
+        length = 0;
+        state = LexerDFA.START;
+        lastAccept = LexerDFA.DEAD;
+        lastEnd = 0;
+        for (final var b : rest) {
+            step(b);
+        }
+    }
+
+    private void emit(TokenKind kind, ByteBuffer source, int begin, int end) {
+        if (!dfa.carriesText(kind)) {
+            consumer.accept(Token.simple(kind));
+            return;
+        }
+
+        if (dfa.isIdentifier(kind)) {
+            final var entry = symbolTable.get(symbolTable.intern(source, begin, end));
+            consumer.accept(Token.identifier(kind, entry.getText(), entry.getId()));
+            return;
+        }
+
+        final var bytes = new byte[end - begin];
+        source.get(begin, bytes);
+        consumer.accept(Token.normal(kind, new String(bytes, StandardCharsets.US_ASCII)));
+    }
+}
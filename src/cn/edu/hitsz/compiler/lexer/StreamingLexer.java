@@ -0,0 +1,134 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * 按需从字节通道中读取源程序并产生词法单元的迭代器
+ * <br>
+ * 源程序通过一个固定大小的窗口读入, 每次只扫描窗口中已完整读入的词素, 被窗口末尾截断的词素会被搬到窗口开头, 等待下一次读入后重新扫描.
+ * 因此无论源文件多大, 同一时刻驻留在内存中的只有一个窗口以及该窗口内识别出的词法单元.
+ * <br>
+ * 与 {@link LexicalAnalyzer#run()} 一样, 识别出的标识符会被加入符号表, 最后产生一个 EOF 词法单元. 通道在读到末尾后被关闭.
+ */
+public class StreamingLexer implements Iterator<Token> {
+    /**
+     * @param channel    源程序所在的通道
+     * @param symbolTable 符号表
+     * @param windowSize 窗口大小 (字节), 若有单个词素比窗口还长, 窗口会为其扩大
+     */
+    public StreamingLexer(ReadableByteChannel channel, SymbolTable symbolTable, int windowSize) {
+        this.channel = channel;
+        this.symbolTable = symbolTable;
+        this.dfa = LexerDFA.getInstance();
+        this.window = new byte[windowSize];
+        this.view = ByteBuffer.wrap(window);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public Token next() {
+        fill();
+        if (pending.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        return pending.poll();
+    }
+
+    private final ReadableByteChannel channel;
+    private final SymbolTable symbolTable;
+    private final LexerDFA dfa;
+    private final Queue<Token> pending = new ArrayDeque<>();
+
+    private byte[] window;
+    private ByteBuffer view;
+    // 窗口中尚未扫描的部分为 [begin, end)
+    private int begin = 0;
+    private int end = 0;
+    private boolean exhausted = false;
+
+    /**
+     * 在待取出的词法单元耗尽时读入并扫描下一个窗口
+     */
+    private void fill() {
+        while (pending.isEmpty() && !exhausted) {
+            final var endOfInput = readMore();
+            begin = LexicalAnalyzer.scanBytes(view, begin, end, endOfInput, this::emit);
+
+            if (endOfInput) {
+                pending.add(Token.eof());
+                exhausted = true;
+                close();
+            }
+        }
+    }
+
+    /**
+     * 把未扫描的部分搬到窗口开头, 然后从通道中读入数据填满窗口的剩余部分
+     *
+     * @return 通道是否已经读到末尾
+     */
+    private boolean readMore() {
+        if (begin > 0) {
+            System.arraycopy(window, begin, window, 0, end - begin);
+            end -= begin;
+            begin = 0;
+        }
+
+        if (end == window.length) {
+            // 单个词素填满了整个窗口
+            window = Arrays.copyOf(window, window.length * 2);
+            view = ByteBuffer.wrap(window);
+        }
+
+        try {
+            final var read = channel.read(ByteBuffer.wrap(window, end, window.length - end));
+            if (read < 0) {
+                return true;
+            }
+            end += read;
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception while lexing", e);
+        }
+    }
+
+    private void emit(TokenKind kind, int lexemeBegin, int lexemeEnd) {
+        if (!dfa.carriesText(kind)) {
+            pending.add(Token.simple(kind));
+            return;
+        }
+
+        if (dfa.isIdentifier(kind)) {
+            final var entry = symbolTable.get(symbolTable.intern(view, lexemeBegin, lexemeEnd));
+            pending.add(Token.identifier(kind, entry.getText(), entry.getId()));
+            return;
+        }
+
+        final var lexeme = new String(window, lexemeBegin, lexemeEnd - lexemeBegin, StandardCharsets.US_ASCII);
+        pending.add(Token.normal(kind, lexeme));
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception while closing source", e);
+        }
+    }
+}
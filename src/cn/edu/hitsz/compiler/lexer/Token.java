@@ -18,7 +18,7 @@ public class Token {
      * @return 代表 EOF 的 token
      */
     public static Token eof() {
-        return new Token(TokenKind.eof(), "");
+        return simple(TokenKind.eof());
     }
 
     /**
@@ -31,10 +31,11 @@ public class Token {
 
     /**
      * @param kind token 类型
-     * @return 具有该 token 类型的一简单 token (不带其它文本表示, 比如标点/关键字)
+     * @return 具有该 token 类型的一简单 token (不带其它文本表示, 比如标点/关键字).
+     * 简单 token 不可变且没有文本, 所以同一类型的简单 token 是共享的同一个实例
      */
     public static Token simple(TokenKind kind) {
-        return normal(kind, "");
+        return kind.getSimpleToken();
     }
 
     /**
@@ -51,7 +52,17 @@ public class Token {
      * @return 具有该 token 类型的一正常 token (带其它文本, 比如标识符/数字文本)
      */
     public static Token normal(TokenKind kind, String text) {
-        return new Token(kind, text);
+        return new Token(kind, text, -1);
+    }
+
+    /**
+     * @param kind     token 类型
+     * @param text     源文本, 应为符号表中驻留的文本
+     * @param symbolId 该标识符在符号表中的编号
+     * @return 携带符号表编号的标识符 token
+     */
+    public static Token identifier(TokenKind kind, String text, int symbolId) {
+        return new Token(kind, text, symbolId);
     }
 
     /**
@@ -75,16 +86,26 @@ public class Token {
         return text;
     }
 
+    /**
+     * @return 标识符在符号表中的编号, 可直接用于 {@link cn.edu.hitsz.compiler.symtab.SymbolTable#get(int)};
+     * 非标识符或未经驻留的 token 为 -1
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
     @Override
     public String toString() {
         return "(%s,%s)".formatted(kind, text);
     }
 
-    private Token(TokenKind kind, String text) {
+    private Token(TokenKind kind, String text, int symbolId) {
         this.kind = kind;
         this.text = text;
+        this.symbolId = symbolId;
     }
 
     private final TokenKind kind;
     private final String text;
+    private final int symbolId;
 }
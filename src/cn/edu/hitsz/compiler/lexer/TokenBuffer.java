@@ -0,0 +1,207 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑的词法单元流
+ * <br>
+ * 以 "数组结构" 代替 "结构数组" 存储词法单元: 每个词法单元只占用三个 int, 分别是其类型的码点
+ * ({@link TokenKind#getCode()}) 以及词素在源缓冲区中的起始下标与长度. 词素文本不被复制, 需要时才从源缓冲区中截取.
+ * 对于标识符, 长度的位置存放的是其在符号表中的编号, 文本直接取自符号表中驻留的 String.
+ * <br>
+ * 该类同时实现了 {@code Iterable<Token>}, 作为语法分析驱动程序与各观察者读取词法单元的视图: 关键字与标点取出的是共享的简单 Token
+ * ({@link Token#simple(TokenKind)}), 只有标识符与整数常量会在被取出的那一刻构造 Token. 因此整个词法单元流从不以 Token 对象列表的形式存在.
+ */
+public class TokenBuffer implements Iterable<Token> {
+    /**
+     * @param source      源程序文本
+     * @param symbolTable 标识符驻留所在的符号表
+     */
+    public TokenBuffer(CharSequence source, SymbolTable symbolTable) {
+        this.text = source;
+        this.bytes = null;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * @param source      以 ASCII 字节存储的源程序
+     * @param symbolTable 标识符驻留所在的符号表
+     */
+    public TokenBuffer(ByteBuffer source, SymbolTable symbolTable) {
+        this.text = null;
+        this.bytes = source;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * 追加一个词法单元
+     *
+     * @param kind  类型
+     * @param begin 词素在源缓冲区中的起始下标 (含)
+     * @param end   词素在源缓冲区中的结束下标 (不含)
+     */
+    public void add(TokenKind kind, int begin, int end) {
+        append(kind.getCode(), begin, end - begin);
+    }
+
+    /**
+     * 追加一个已驻留的标识符
+     *
+     * @param kind     类型
+     * @param begin    词素在源缓冲区中的起始下标
+     * @param end      词素在源缓冲区中的结束下标
+     * @param symbolId 该标识符在符号表中的编号
+     */
+    public void add(TokenKind kind, int begin, int end, int symbolId) {
+        append(-kind.getCode() - 2, begin, symbolId);
+    }
+
+    private void append(int kindCode, int begin, int payload) {
+        if (size == kinds.length) {
+            final var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+
+        kinds[size] = kindCode;
+        starts[size] = begin;
+        payloads[size] = payload;
+        size++;
+    }
+
+    /**
+     * @return 词法单元个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 下标
+     * @return 该词法单元类型的码点
+     */
+    public int kindCodeAt(int index) {
+        checkIndex(index);
+        final var code = kinds[index];
+        return isInterned(code) ? -code - 2 : code;
+    }
+
+    /**
+     * @param index 下标
+     * @return 该词法单元在符号表中的编号, 非标识符为 -1
+     */
+    public int symbolIdAt(int index) {
+        checkIndex(index);
+        return isInterned(kinds[index]) ? payloads[index] : -1;
+    }
+
+    /**
+     * @param index 下标
+     * @return 该词法单元的类型
+     */
+    public TokenKind kindAt(int index) {
+        return TokenKind.fromCode(kindCodeAt(index));
+    }
+
+    /**
+     * @param index 下标
+     * @return 该词法单元的文本, 关键字与标点的文本为空字符串 (与 {@link Token#getText()} 一致)
+     */
+    public String textAt(int index) {
+        final var kind = kindAt(index);
+        if (!LexerDFA.getInstance().carriesText(kind)) {
+            return "";
+        }
+
+        final var symbolId = symbolIdAt(index);
+        if (symbolId >= 0) {
+            return symbolTable.get(symbolId).getText();
+        }
+
+        final var begin = starts[index];
+        final var length = payloads[index];
+        if (text != null) {
+            return text.subSequence(begin, begin + length).toString();
+        }
+
+        final var lexeme = new byte[length];
+        bytes.get(begin, lexeme, 0, length);
+        return new String(lexeme, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 以 Token 的形式读取一个词法单元, 关键字与标点不会产生新对象
+     *
+     * @param index 下标
+     * @return 该词法单元
+     */
+    public Token get(int index) {
+        final var kind = kindAt(index);
+        if (!LexerDFA.getInstance().carriesText(kind)) {
+            return Token.simple(kind);
+        }
+
+        final var symbolId = symbolIdAt(index);
+        if (symbolId >= 0) {
+            return Token.identifier(kind, symbolTable.get(symbolId).getText(), symbolId);
+        }
+
+        return Token.normal(kind, textAt(index));
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Token next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * @return 三个下标数组所占用的字节数 (不含源缓冲区)
+     */
+    public long footprintBytes() {
+        return 3L * Integer.BYTES * kinds.length;
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final CharSequence text;
+    private final ByteBuffer bytes;
+    private final SymbolTable symbolTable;
+
+    // 已驻留的标识符的码点以 -code - 2 存储 (EOF 的码点 -1 不会与之冲突), 此时 payloads 中存放符号表编号而非词素长度
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] payloads = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private static boolean isInterned(int storedCode) {
+        return storedCode < -1;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+}
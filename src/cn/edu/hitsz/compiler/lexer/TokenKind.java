@@ -29,31 +29,70 @@ public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
     private static final Map<String, TokenKind> allowed = new HashMap<>();
     private static final TokenKind eof = new TokenKind("$", -1);
+    // 以码点为下标的 TokenKind 表, 供紧凑的词法单元流由码点还原出 TokenKind
+    private static TokenKind[] byCode = new TokenKind[0];
 
     /**
      * 从码点文件中读取允许的标识符集合
      */
     public static void loadTokenKinds() {
-        if (!allowed.isEmpty()) {
-            throw new RuntimeException("Can not set allowed twice");
-        }
-
         final var lines = FileUtils.readLines(FilePathConfig.CODING_MAP_PATH);
-        for (final var line : lines) {
+        final var ids = new String[lines.size()];
+        final var codes = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
             // 码点文件每行形如:
             // 54 IntConst
             // 空格分割, 前面为码点, 后面为标识符
-            final var words = line.split(" ");
-            final var code = Integer.parseInt(words[0]);
-            final var id = words[1];
+            final var words = lines.get(i).split(" ");
+            codes[i] = Integer.parseInt(words[0]);
+            ids[i] = words[1];
+        }
+
+        loadTokenKinds(ids, codes);
+    }
 
-            allowed.put(id, new TokenKind(id, code));
+    /**
+     * 直接以给定的标识符与码点设置允许的标识符集合, 不读取码点文件, 供预先生成的分析表类使用
+     *
+     * @param ids   标识符
+     * @param codes 对应的码点
+     */
+    public static void loadTokenKinds(String[] ids, int[] codes) {
+        if (!allowed.isEmpty()) {
+            throw new RuntimeException("Can not set allowed twice");
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            allowed.put(ids[i], new TokenKind(ids[i], codes[i]));
+        }
+
+        final var maxCode = allowed.values().stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        byCode = new TokenKind[maxCode + 1];
+        for (final var kind : allowed.values()) {
+            byCode[kind.getCode()] = kind;
         }
 
         // EOF
         allowed.put("$", eof);
     }
 
+    /**
+     * @param code 码点
+     * @return 具有该码点的 TokenKind, EOF 的码点为 -1
+     * @throws RuntimeException 不存在具有该码点的 TokenKind
+     */
+    public static TokenKind fromCode(int code) {
+        if (code == eof.code) {
+            return eof;
+        }
+
+        if (code < 0 || code >= byCode.length || byCode[code] == null) {
+            throw new RuntimeException("Illegal code: " + code);
+        }
+
+        return byCode[code];
+    }
+
     /**
      * @param id 标识符
      * @return 该标识符是否被允许作为 TokenKind 的标识符
@@ -107,10 +146,19 @@ public class TokenKind extends Term {
         return code;
     }
 
+    /**
+     * @return 该类型唯一的不带文本的 Token, 所有关键字与标点 Token 共享此实例
+     */
+    Token getSimpleToken() {
+        return simpleToken;
+    }
+
     private TokenKind(String id, int code) {
         super(id);
         this.code = code;
+        this.simpleToken = Token.normal(this, "");
     }
 
     private final int code;
+    private final Token simpleToken;
 }
@@ -0,0 +1,19 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 词法自动机识别出一个词素后的回调
+ * <br>
+ * 自动机本身只负责在缓冲区上移动下标, 并不构造任何对象; 识别出的词素以 [begin, end) 的下标区间交给此接口,
+ * 由调用者决定是构造 Token, 写入紧凑的缓冲区, 还是仅仅计数.
+ *
+ * @see LexerDFA#scan(CharSequence, int, int, boolean, TokenSink)
+ */
+@FunctionalInterface
+public interface TokenSink {
+    /**
+     * @param kind  词素的类型, 已经是解析好的 TokenKind 实例
+     * @param begin 词素在缓冲区中的起始下标 (含)
+     * @param end   词素在缓冲区中的结束下标 (不含)
+     */
+    void accept(TokenKind kind, int begin, int end);
+}
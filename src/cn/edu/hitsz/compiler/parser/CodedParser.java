@@ -0,0 +1,32 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 把分析表直接编码为代码的 LR 驱动程序, 由 {@link ParserClassGenerator} 生成
+ * <br>
+ * 实例持有驱动过程中的状态栈, 不能被多个线程同时使用
+ */
+public interface CodedParser {
+    /**
+     * 分析词法单元流, 并通过 analyzer 通知各观察者, 通知的顺序与参数同 {@link SyntaxAnalyzer#run()}
+     *
+     * @param tokens   词法单元流, 最后一个词法单元应为 EOF
+     * @param analyzer 用于通知观察者的驱动程序
+     * @throws RuntimeException 遇到语法错误
+     */
+    void parse(Iterator<Token> tokens, SyntaxAnalyzer analyzer);
+
+    /**
+     * 分析可随机访问的词法单元列表, 按下标读取词法单元, 不经过迭代器. 其余同 {@link #parse(Iterator, SyntaxAnalyzer)}
+     *
+     * @param tokens   词法单元列表, 最后一个词法单元应为 EOF
+     * @param position 开始分析的下标
+     * @param analyzer 用于通知观察者的驱动程序
+     * @throws RuntimeException 遇到语法错误
+     */
+    void parse(List<Token> tokens, int position, SyntaxAnalyzer analyzer);
+}
@@ -47,11 +47,7 @@ public class IRGenerator implements ActionObserver {
                 var from = irGeneratorStack.pop().getIrValue();
                 irGeneratorStack.pop();
                 var token = irGeneratorStack.pop().getToken();
-                var text = token.getText();
-                if (!symbolTable.has(text)) {
-                    throw new RuntimeException("No such id in symbolTable!");
-                }
-                var result = IRVariable.named(text);
+                var result = namedVariable(token);
                 instructions.add(Instruction.createMov(result, from));
                 irGeneratorStack.push(new IRGeneratorStackEntry());
             }
@@ -104,11 +100,7 @@ public class IRGenerator implements ActionObserver {
             case 14 -> {
                 // B -> id
                 var token = irGeneratorStack.pop().getToken();
-                var text = token.getText();
-                if (!symbolTable.has(text)) {
-                    throw new RuntimeException("No such id in symbolTable!");
-                }
-                var irVariable = IRVariable.named(text);
+                var irVariable = namedVariable(token);
                 irGeneratorStack.push(new IRGeneratorStackEntry(irVariable));
             }
             case 15 -> {
@@ -118,7 +110,8 @@ public class IRGenerator implements ActionObserver {
                 irGeneratorStack.push(new IRGeneratorStackEntry(irImmediate));
             }
             default -> {
-                // 其它产生式直接弹栈即可
+                // 其它产生式直接弹栈即可. 语句列表左递归时, S_list -> S_list S Semicolon 在这里弹出刚结束的整条语句,
+                // 该语句的指令在规约 S 时已经全部生成, 栈深不随语句条数增长
                 int num = production.body().size();
                 while (num > 0) {
                     irGeneratorStack.pop();
@@ -129,6 +122,25 @@ public class IRGenerator implements ActionObserver {
             }
         }
     }
+    /**
+     * 由标识符 token 构造具名 IR 变量. 驻留过的标识符直接按编号检查符号表, 不再对文本做哈希
+     */
+    private IRVariable namedVariable(Token token) {
+        final var symbolId = token.getSymbolId();
+        if (symbolId >= 0) {
+            if (!symbolTable.has(symbolId)) {
+                throw new RuntimeException("No such id in symbolTable!");
+            }
+            return IRVariable.named(token.getText(), symbolId);
+        }
+
+        var text = token.getText();
+        if (!symbolTable.has(text)) {
+            throw new RuntimeException("No such id in symbolTable!");
+        }
+        return IRVariable.named(text);
+    }
+
     @Override
     public void whenAccept(Status currentStatus) {
         // TODO
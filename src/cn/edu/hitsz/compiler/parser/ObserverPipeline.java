@@ -0,0 +1,233 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步分派动作通知的观察者流水线
+ * <br>
+ * 驱动程序原本在自己的线程上依次调用各个观察者. 把该类注册为驱动程序的观察者, 再把真正的观察者加入该类,
+ * 驱动程序发出的每个通知就只是写入环形缓冲区中的一个槽位, 各观察者各自在一个线程上按顺序消费全部通知,
+ * 语法分析因而与语义分析, IR 生成等重叠进行.
+ * <br>
+ * 环形缓冲区仿照 Disruptor, 为单生产者多消费者:
+ * <ul>
+ *     <li>槽位在构造时一次分配 (按字段拆成几个数组), 之后只覆写, 发布通知不分配对象</li>
+ *     <li>生产者写好槽位后以 release 语义推进发布序号 cursor, 消费者以 acquire 语义读取 cursor 后即可读取之前的全部槽位</li>
+ *     <li>每个消费者维护自己处理完的序号. 生产者写入序号 n 之前要等所有消费者都越过 n - 容量, 所得的最小值缓存起来,
+ *     缓冲区未满时不读取消费者的序号</li>
+ *     <li>消费者每次取走 cursor 之前的全部通知成批处理, 批末才更新一次自己的序号</li>
+ *     <li>等待时先自旋, 再让出处理器, 最后短暂休眠</li>
+ * </ul>
+ * Accept 是屏障: 发布 accept 后生产者等待所有消费者处理完毕, 消费线程随之结束, 因此驱动程序返回时各观察者的结果都已可见.
+ * 观察者抛出的异常会在屏障处重新抛出. 下一次分析时消费线程会重新启动.
+ * <br>
+ * 各观察者之间除符号表外不共享状态, 它们可以并发地读取符号表并修改各自条目的类型, 但分析期间不能有其它线程向符号表加入条目,
+ * 因此不能与流式词法分析同时使用. 驱动程序因语法错误中途退出时消费线程会一直等待, 它们是守护线程, 不会阻止程序退出
+ */
+public class ObserverPipeline implements ActionObserver {
+    private static final byte SHIFT = 0;
+    private static final byte REDUCE = 1;
+    private static final byte ACCEPT = 2;
+
+    private final List<ActionObserver> observers = new ArrayList<>();
+
+    // 环形缓冲区的槽位, 载荷为 Token 或 Production
+    private final int mask;
+    private final byte[] kinds;
+    private final Status[] statuses;
+    private final Object[] payloads;
+
+    // 已发布的最大序号
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // 上次查询到的所有消费者处理完的最小序号
+    private long gate = -1;
+    // 当前一次分析的消费者, 不在分析中时为 null
+    private Consumer[] consumers = null;
+    private volatile Throwable failure = null;
+
+    /**
+     * @param capacity 环形缓冲区的槽位数, 向上取整为 2 的幂
+     */
+    public ObserverPipeline(int capacity) {
+        if (capacity <= 0) {
+            throw new RuntimeException("Illegal ring buffer capacity: " + capacity);
+        }
+        final var size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.kinds = new byte[size];
+        this.statuses = new Status[size];
+        this.payloads = new Object[size];
+    }
+
+    /**
+     * 加入观察者, 它将在自己的线程上收到全部通知. 需要在分析开始之前加入
+     *
+     * @param observer 观察者
+     */
+    public void addObserver(ActionObserver observer) {
+        if (consumers != null) {
+            throw new RuntimeException("Cannot add observers while parsing");
+        }
+        observers.add(observer);
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        publish(SHIFT, currentStatus, currentToken);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        publish(REDUCE, currentStatus, production);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        final var sequence = publish(ACCEPT, currentStatus, null);
+        awaitConsumers(sequence);
+        for (final var consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for observers", e);
+            }
+        }
+        consumers = null;
+
+        final var failed = failure;
+        if (failed != null) {
+            failure = null;
+            throw new RuntimeException("Action observer failed", failed);
+        }
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        for (final var observer : observers) {
+            observer.setSymbolTable(table);
+        }
+    }
+
+    /**
+     * 写入一个槽位并发布, 缓冲区已满时等待最慢的消费者
+     *
+     * @return 该通知的序号
+     */
+    private long publish(byte kind, Status status, Object payload) {
+        if (consumers == null) {
+            start();
+        }
+        final var sequence = cursor.get() + 1;
+        final var wrapPoint = sequence - kinds.length;
+        if (wrapPoint > gate) {
+            gate = awaitConsumers(wrapPoint);
+        }
+
+        final var slot = (int) sequence & mask;
+        kinds[slot] = kind;
+        statuses[slot] = status;
+        payloads[slot] = payload;
+        cursor.setRelease(sequence);
+        return sequence;
+    }
+
+    /**
+     * @param sequence 序号
+     * @return 所有消费者都处理完该序号之后, 它们处理完的最小序号
+     */
+    private long awaitConsumers(long sequence) {
+        for (int idle = 0; ; idle++) {
+            var min = Long.MAX_VALUE;
+            for (final var consumer : consumers) {
+                min = Math.min(min, consumer.sequence.getAcquire());
+            }
+            if (min >= sequence) {
+                return min;
+            }
+            backOff(idle);
+        }
+    }
+
+    private void start() {
+        final var from = cursor.get();
+        gate = from;
+        consumers = new Consumer[observers.size()];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Consumer(observers.get(i), from);
+        }
+        // 线程启动之前的写入 (包括 setSymbolTable) 对消费线程可见
+        for (final var consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    private static void backOff(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(10_000);
+        }
+    }
+
+    /**
+     * 一个观察者及其消费线程
+     */
+    private final class Consumer implements Runnable {
+        private final ActionObserver observer;
+        // 已处理完的序号. 观察者抛出异常后置为最大值, 不再阻挡生产者
+        private final AtomicLong sequence;
+        private final Thread thread;
+
+        private Consumer(ActionObserver observer, long from) {
+            this.observer = observer;
+            this.sequence = new AtomicLong(from);
+            this.thread = new Thread(this, "observer-" + observer.getClass().getSimpleName());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            var next = sequence.get() + 1;
+            try {
+                for (int idle = 0; ; ) {
+                    final var available = cursor.getAcquire();
+                    if (available < next) {
+                        backOff(idle++);
+                        continue;
+                    }
+                    idle = 0;
+
+                    for (; next <= available; next++) {
+                        final var slot = (int) next & mask;
+                        switch (kinds[slot]) {
+                            case SHIFT -> observer.whenShift(statuses[slot], (Token) payloads[slot]);
+                            case REDUCE -> observer.whenReduce(statuses[slot], (Production) payloads[slot]);
+                            default -> {
+                                observer.whenAccept(statuses[slot]);
+                                sequence.setRelease(next);
+                                return;
+                            }
+                        }
+                    }
+                    sequence.setRelease(available);
+                }
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                sequence.setRelease(Long.MAX_VALUE);
+            }
+        }
+    }
+}
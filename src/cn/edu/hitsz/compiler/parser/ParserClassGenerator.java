@@ -0,0 +1,258 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.utils.SourceCompiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 为 LR 分析表生成专用的驱动程序
+ * <br>
+ * {@link SyntaxAnalyzer#run()} 每一步都要查 ACTION 与 GOTO 表; 而该类把分析表翻译为一段 Java 源码: 每个状态一个方法,
+ * 方法内按向前看符号的码点 switch, 每个分支直接写出移入的目标状态, 或规约的产生式与体长; 每个非终结符一个 GOTO 方法, 按栈顶状态 switch.
+ * 于是驱动循环中不再有任何查表, 各状态的方法都很小, 可以被 JIT 分别编译并内联进分派的 switch 中.
+ * <br>
+ * 这与递归上升分析的结构相同, 只是没有把状态栈放在 Java 调用栈上: 语句列表是右递归的, 调用栈的深度会随语句数增长.
+ * 因此状态栈仍是一个 int 数组, 状态方法之间以一个分派循环衔接.
+ * <br>
+ * 源码在内存中编译, 作为隐藏类载入本包. 观察者收到的通知与表驱动的程序完全相同; 编译需要的环境同 {@link SourceCompiler},
+ * 不满足时 {@link #getParser(CompiledLRTable)} 返回 null, 由调用者回退到表驱动的程序.
+ */
+public final class ParserClassGenerator {
+    private static final String PACKAGE = ParserClassGenerator.class.getPackageName();
+    private static final String CLASS_NAME = "GeneratedParser";
+
+    /**
+     * 为分析表生成驱动程序, 无法在当前环境中编译时返回 null
+     *
+     * @param table 编译后的分析表
+     * @return 生成的驱动程序, 或 null
+     */
+    public static CodedParser getParser(CompiledLRTable table) {
+        try {
+            return generate(table);
+        } catch (RuntimeException e) {
+            System.err.println("Falling back to table-driven parser: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 为分析表生成, 编译并载入驱动程序类
+     *
+     * @param table 编译后的分析表
+     * @return 驱动程序实例
+     */
+    public static CodedParser generate(CompiledLRTable table) {
+        final var bytes = SourceCompiler.compile(PACKAGE + "." + CLASS_NAME, generateSource(table));
+
+        final var statuses = new Status[table.stateCount()];
+        for (int state = 0; state < statuses.length; state++) {
+            statuses[state] = table.status(state);
+        }
+        final var productions = new Production[table.productionCount()];
+        for (int p = 0; p < productions.length; p++) {
+            productions[p] = table.production(p);
+        }
+
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, Status[].class, Production[].class));
+            return (CodedParser) constructor.invoke(statuses, productions);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to load generated parser", e);
+        }
+    }
+
+    /**
+     * 生成驱动程序的源码
+     *
+     * @param table 编译后的分析表
+     * @return Java 源码
+     */
+    public static String generateSource(CompiledLRTable table) {
+        final var code = new StringBuilder();
+        code.append("package ").append(PACKAGE).append(";\n\n");
+        code.append("import cn.edu.hitsz.compiler.lexer.Token;\n");
+        code.append("import cn.edu.hitsz.compiler.parser.table.Production;\n");
+        code.append("import cn.edu.hitsz.compiler.parser.table.Status;\n\n");
+        code.append("import java.util.Arrays;\n");
+        code.append("import java.util.Iterator;\n");
+        code.append("import java.util.List;\n\n");
+        code.append("final class ").append(CLASS_NAME).append(" implements CodedParser {\n");
+        code.append("    private static final int SHIFTED = -1;\n");
+        code.append("    private static final int ACCEPTED = -2;\n\n");
+        code.append("    private final Status[] statuses;\n");
+        code.append("    private final Production[] productions;\n");
+        code.append("    private int[] states = new int[64];\n");
+        code.append("    private int top;\n");
+        code.append("    private Token token;\n");
+        code.append("    private Iterator<Token> tokens;\n");
+        code.append("    private List<Token> tokenList;\n");
+        code.append("    private int tokenPosition;\n");
+        code.append("    private int tokenCount;\n");
+        code.append("    private SyntaxAnalyzer analyzer;\n\n");
+        code.append("    ").append(CLASS_NAME).append("(Status[] statuses, Production[] productions) {\n");
+        code.append("        this.statuses = statuses;\n");
+        code.append("        this.productions = productions;\n");
+        code.append("    }\n\n");
+
+        appendParse(code, table);
+        appendHelpers(code);
+        for (int state = 0; state < table.stateCount(); state++) {
+            appendState(code, table, state);
+        }
+        for (int nonTerminal = 0; nonTerminal < table.nonTerminalCount(); nonTerminal++) {
+            appendGoto(code, table, nonTerminal);
+        }
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private static void appendParse(StringBuilder code, CompiledLRTable table) {
+        code.append("    @Override\n");
+        code.append("    public void parse(Iterator<Token> tokens, SyntaxAnalyzer analyzer) {\n");
+        code.append("        this.tokens = tokens;\n");
+        code.append("        this.tokenList = null;\n");
+        code.append("        run(analyzer);\n");
+        code.append("    }\n\n");
+        code.append("    @Override\n");
+        code.append("    public void parse(List<Token> tokens, int position, SyntaxAnalyzer analyzer) {\n");
+        code.append("        this.tokens = null;\n");
+        code.append("        this.tokenList = tokens;\n");
+        code.append("        this.tokenPosition = position;\n");
+        code.append("        this.tokenCount = tokens.size();\n");
+        code.append("        run(analyzer);\n");
+        code.append("    }\n\n");
+        code.append("    private void run(SyntaxAnalyzer analyzer) {\n");
+        code.append("        this.analyzer = analyzer;\n");
+        code.append("        top = 0;\n");
+        code.append("        states[0] = ").append(table.initState()).append(";\n");
+        code.append("        advance();\n");
+        code.append("        while (token != null) {\n");
+        code.append("            final int code = token.getKind().getCode();\n");
+        code.append("            final int result = switch (states[top]) {\n");
+        for (int state = 0; state < table.stateCount(); state++) {
+            code.append("                case ").append(state).append(" -> state").append(state).append("(code);\n");
+        }
+        code.append("                default -> throw error();\n");
+        code.append("            };\n");
+        code.append("            if (result >= 0) {\n");
+        code.append("                analyzer.callWhenInReduce(statuses[states[top]], productions[result]);\n");
+        code.append("            } else if (result == SHIFTED) {\n");
+        code.append("                analyzer.callWhenInShift(statuses[states[top]], token);\n");
+        code.append("                advance();\n");
+        code.append("            } else {\n");
+        code.append("                analyzer.callWhenInAccept(statuses[states[top]]);\n");
+        code.append("                token = null;\n");
+        code.append("            }\n");
+        code.append("        }\n");
+        code.append("        this.tokens = null;\n");
+        code.append("        this.tokenList = null;\n");
+        code.append("        this.analyzer = null;\n");
+        code.append("    }\n\n");
+    }
+
+    private static void appendHelpers(StringBuilder code) {
+        code.append("    private void advance() {\n");
+        code.append("        if (tokenList != null) {\n");
+        code.append("            token = tokenPosition < tokenCount ? tokenList.get(tokenPosition++) : null;\n");
+        code.append("        } else {\n");
+        code.append("            token = tokens.hasNext() ? tokens.next() : null;\n");
+        code.append("        }\n");
+        code.append("    }\n\n");
+        code.append("    private void push(int state) {\n");
+        code.append("        if (++top == states.length) {\n");
+        code.append("            states = Arrays.copyOf(states, top * 2);\n");
+        code.append("        }\n");
+        code.append("        states[top] = state;\n");
+        code.append("    }\n\n");
+        code.append("    private RuntimeException error() {\n");
+        code.append("        return new RuntimeException(\"Syntax error at %s in status %d\".formatted(token, states[top]));\n");
+        code.append("    }\n\n");
+    }
+
+    /**
+     * 生成一个状态的方法. 动作相同的码点合并为一个分支, 出错的码点交给 default 分支.
+     * 状态方法只修改状态栈, 返回规约的产生式编号, 或 SHIFTED 与 ACCEPTED; 通知观察者与读取下一个词法单元都在分派循环中进行.
+     * 这样各状态的方法更小, 调用观察者的位置也只有三处, 不会因为内联预算耗尽而在各状态中变成真正的调用
+     */
+    private static void appendState(StringBuilder code, CompiledLRTable table, int state) {
+        final Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int column = 0; column < table.terminalColumns(); column++) {
+            final var terminalCode = column - 1;
+            final var action = table.action(state, terminalCode);
+            if (CompiledLRTable.kindOf(action) != CompiledLRTable.ERROR) {
+                groups.computeIfAbsent(action, key -> new ArrayList<>()).add(terminalCode);
+            }
+        }
+
+        code.append("    private int state").append(state).append("(int code) {\n");
+        code.append("        switch (code) {\n");
+        for (final var group : groups.entrySet()) {
+            final var action = group.getKey();
+            final var operand = CompiledLRTable.operandOf(action);
+            code.append("            case ").append(group.getValue().stream().map(String::valueOf).collect(Collectors.joining(", ")))
+                .append(" -> {\n");
+            switch (CompiledLRTable.kindOf(action)) {
+                case CompiledLRTable.SHIFT -> {
+                    code.append("                push(").append(operand).append(");\n");
+                    code.append("                return SHIFTED;\n");
+                }
+                case CompiledLRTable.REDUCE -> {
+                    code.append("                // ").append(table.production(operand)).append("\n");
+                    final var length = table.bodyLength(operand);
+                    if (length > 0) {
+                        code.append("                top -= ").append(length).append(";\n");
+                    }
+                    code.append("                push(goto").append(table.headOrdinal(operand)).append("(states[top]));\n");
+                    code.append("                return ").append(operand).append(";\n");
+                }
+                default -> {
+                    code.append("                return ACCEPTED;\n");
+                }
+            }
+            code.append("            }\n");
+        }
+        code.append("            default -> throw error();\n");
+        code.append("        }\n");
+        code.append("    }\n\n");
+    }
+
+    /**
+     * 生成一个非终结符的 GOTO 方法. 没有任何转移的非终结符 (如增广文法的头部) 直接报错
+     */
+    private static void appendGoto(StringBuilder code, CompiledLRTable table, int nonTerminal) {
+        final var cases = new StringBuilder();
+        for (int state = 0; state < table.stateCount(); state++) {
+            final var target = table.gotoState(state, nonTerminal);
+            if (target >= 0) {
+                cases.append("            case ").append(state).append(" -> ").append(target).append(";\n");
+            }
+        }
+
+        code.append("    private int goto").append(nonTerminal).append("(int state) {\n");
+        if (cases.isEmpty()) {
+            code.append("        throw error();\n");
+        } else {
+            code.append("        return switch (state) {\n");
+            code.append(cases);
+            code.append("            default -> throw error();\n");
+            code.append("        };\n");
+        }
+        code.append("    }\n\n");
+    }
+
+    private ParserClassGenerator() {
+    }
+}
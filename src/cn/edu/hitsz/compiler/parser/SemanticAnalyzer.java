@@ -31,9 +31,9 @@ public class SemanticAnalyzer implements ActionObserver {
                 // 获得 D id
                 var token = semanticStack.pop().getToken();
                 var type = semanticStack.pop().getType();
-                // 获得Text
-                var idText = token.getText();
-                symbolTable.get(idText).setType(type);
+                // 驻留过的标识符直接按编号取得条目, 否则按文本查找
+                var entry = token.getSymbolId() >= 0 ? symbolTable.get(token.getSymbolId()) : symbolTable.get(token.getText());
+                entry.setType(type);
                 // 压入空记录占位
                 semanticStack.push(new SemanticStackEntry());
             }
@@ -144,6 +144,7 @@ package cn.edu.hitsz.compiler.parser;
 import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.CompilerOptions;
 
 import java.util.*;
 import java.util.function.ToLongBiFunction;
@@ -162,8 +163,18 @@ public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
 
-    private Queue<Token> tokenQueue = new LinkedList<>();
+    // 输入的词法单元流, 驱动程序每次只从中拉取一个词法单元作为向前看符号
+    private Iterator<Token> tokenSource = Collections.emptyIterator();
+    // 输入为可随机访问的列表时直接按下标读取, 不经过迭代器
+    private List<Token> tokenList = null;
+    private int tokenPosition = 0;
     private LRTable lrTable;
+    // 编译后的分析表, 仅在 CompilerOptions.COMPILED_LR_TABLE 打开时非空
+    private CompiledLRTable compiledTable = null;
+    // 生成的专用驱动程序, 仅在 CompilerOptions.GENERATED_PARSER 打开且能够编译时非空
+    private CodedParser codedParser = null;
+    // runCompiled 的状态栈, 多次运行之间保留已扩张的容量
+    private int[] compiledStates = new int[64];
     private Stack<Status> statusStack = new Stack<>();
     private Stack<Token> tokenStack = new Stack<>();
 
@@ -220,17 +231,35 @@ public class SyntaxAnalyzer {
     }
 
     public void loadTokens(Iterable<Token> tokens) {
-        for(Token token : tokens){
-            tokenQueue.add(token);
-        }//将tokens存在队列里
         // TODO: 加载词法单元
         // 你可以自行选择要如何存储词法单元, 譬如使用迭代器, 或是栈, 或是干脆使用一个 list 全存起来
         // 需要注意的是, 在实现驱动程序的过程中, 你会需要面对只读取一个 token 而不能消耗它的情况,
         // 在自行设计的时候请加以考虑此种情况
+        if (tokens instanceof List<Token> list && tokens instanceof RandomAccess) {
+            tokenList = list;
+            tokenPosition = 0;
+            tokenSource = Collections.emptyIterator();
+        } else {
+            loadTokens(tokens.iterator());
+        }
+    }
+
+    /**
+     * 加载按需产生的词法单元流, 驱动程序只持有一个向前看符号, 不会把整个词法单元流复制一份
+     *
+     * @param tokens 词法单元迭代器, 最后一个词法单元应为 EOF
+     */
+    public void loadTokens(Iterator<Token> tokens) {
+        tokenList = null;
+        tokenSource = tokens;
     }
 
     public void loadLRTable(LRTable table) {
         lrTable = table;
+        compiledTable = CompilerOptions.COMPILED_LR_TABLE ? CompiledLRTable.compile(table) : null;
+        codedParser = CompilerOptions.GENERATED_PARSER
+            ? ParserClassGenerator.getParser(compiledTable != null ? compiledTable : CompiledLRTable.compile(table))
+            : null;
         // TODO: 加载 LR 分析表
         // 你可以自行选择要如何使用该表格:
         // 是直接对 LRTable 调用 getAction/getGoto, 抑或是直接将 initStatus 存起来使用
@@ -241,11 +270,24 @@ public class SyntaxAnalyzer {
         // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
+        if (codedParser != null) {
+            if (tokenList != null) {
+                codedParser.parse(tokenList, tokenPosition, this);
+            } else {
+                codedParser.parse(tokenSource, this);
+            }
+            return;
+        }
+        if (compiledTable != null) {
+            runCompiled();
+            return;
+        }
+
         statusStack.push( lrTable.getInit() );
         tokenStack.push( Token.eof() );
-        while( !tokenQueue.isEmpty() ){
+        Token tokenInput = nextToken();//获取当前将要输入的Token
+        while( tokenInput != null ){
             //Token tokenTemp = tokenStack.peek();//获取当前符号栈顶的Token
-            Token tokenInput = tokenQueue.peek();//获取当前将要输入的Token
             Status statusTemp = statusStack.peek();//获取当前所在的状态
             Action actionTemp = lrTable.getAction( statusTemp, tokenInput);//获取将要采取的action
             switch ( actionTemp.getKind() ){
@@ -263,13 +305,13 @@ public class SyntaxAnalyzer {
                 case Shift://移进操作
                     statusStack.push( actionTemp.getStatus() );
                     tokenStack.push( tokenInput );
-                    tokenQueue.remove();
                     this.callWhenInShift(statusStack.peek(), tokenInput );
+                    tokenInput = nextToken();
 
                     break;
                 case Accept:
                     this.callWhenInAccept(statusTemp);
-                    tokenQueue.remove();
+                    tokenInput = nextToken();
                     break;
                 case Error:
 
@@ -280,4 +322,60 @@ public class SyntaxAnalyzer {
             }
         }
     }
+
+    /**
+     * 完全基于编译后分析表的驱动程序
+     * <br>
+     * 状态栈为 int 数组, 动作与转移都是数组下标运算. 符号栈在驱动过程中从未被读取, 故不再维护.
+     * 输入为列表时按下标读取词法单元, 状态栈在多次运行之间复用, 因此预热后驱动循环本身不分配任何对象.
+     * 通知观察者时传入的状态与产生式与 {@link #run()} 的原实现相同. 遇到错误动作时抛出异常.
+     */
+    private void runCompiled() {
+        final var table = compiledTable;
+        var states = compiledStates;
+        var top = 0;
+        states[0] = table.initState();
+
+        Token tokenInput = nextToken();
+        while (tokenInput != null) {
+            final var action = table.action(states[top], tokenInput.getKind().getCode());
+            switch (CompiledLRTable.kindOf(action)) {
+                case CompiledLRTable.REDUCE -> {
+                    final var production = CompiledLRTable.operandOf(action);
+                    top -= table.bodyLength(production);
+                    final var target = table.gotoState(states[top], table.headOrdinal(production));
+                    if (++top == states.length) {
+                        states = compiledStates = Arrays.copyOf(states, top * 2);
+                    }
+                    states[top] = target;
+                    callWhenInReduce(table.status(target), table.production(production));
+                }
+                case CompiledLRTable.SHIFT -> {
+                    final var target = CompiledLRTable.operandOf(action);
+                    if (++top == states.length) {
+                        states = compiledStates = Arrays.copyOf(states, top * 2);
+                    }
+                    states[top] = target;
+                    callWhenInShift(table.status(target), tokenInput);
+                    tokenInput = nextToken();
+                }
+                case CompiledLRTable.ACCEPT -> {
+                    callWhenInAccept(table.status(states[top]));
+                    return;
+                }
+                default -> throw new RuntimeException(
+                    "Syntax error at %s in status %d".formatted(tokenInput, states[top]));
+            }
+        }
+    }
+
+    /**
+     * @return 输入中的下一个词法单元, 输入耗尽时返回 null
+     */
+    private Token nextToken() {
+        if (tokenList != null) {
+            return tokenPosition < tokenList.size() ? tokenList.get(tokenPosition++) : null;
+        }
+        return tokenSource.hasNext() ? tokenSource.next() : null;
+    }
 }
@@ -0,0 +1,187 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 解析轨迹的记录器
+ * <br>
+ * 该类将自己注册为 LR 驱动程序的动作观察者, 把一次分析中的 shift, reduce 与 accept 序列连同分析前的符号表写入二进制文件.
+ * 之后可以用 {@link TraceReplayer} 读取该文件驱动任意一组观察者, 不必重新进行词法分析与语法分析.
+ * <br>
+ * 除文件头与文件尾外, 所有整数都是无符号 varint (每字节低 7 位为数据, 最高位表示后面还有字节, 低位在前),
+ * 字符串为 varint 字节数 + UTF-8. 格式:
+ * <pre>
+ *     int    魔数 "LRTR", int 版本号
+ *     事件序列, 每个事件以 varint (状态编号 &lt;&lt; 2 | 种类) 开头:
+ *         shift  (0): varint 词法单元的引用
+ *         reduce (1): varint 产生式编号
+ *         accept (2): 无
+ *     符号表: varint 条目编号数 n, 之后按编号依次为各条目的文本, 被移除的编号记为 varint 0, 否则为 varint (字节数 + 1) + UTF-8
+ *     long   符号表的起始偏移
+ * </pre>
+ * 内容相同 (类型, 文本与符号表编号均相同) 的词法单元只定义一次. 词法单元的引用是它在本文件中的定义序号,
+ * 引用恰好等于已定义的个数时表示在此处定义新的词法单元, 其后紧跟 varint (码点 + 1), varint (符号表编号 + 1) 与文本.
+ * 因此记录时不需要预先知道全部词法单元, 重放时也只需顺序读取一遍.
+ * <br>
+ * 符号表在 accept 时写出, 其中只有条目的文本, 不含类型, 即重放开始时的符号表与实时分析开始时相同. 轨迹中不含语法文件的内容,
+ * 重放时产生式按编号从当前的语法中取得, 因此语法改变后之前记录的轨迹即失效
+ */
+public class TraceRecorder implements ActionObserver {
+    static final int MAGIC = 0x4C525452;
+    static final int VERSION = 1;
+    static final int SHIFT = 0;
+    static final int REDUCE = 1;
+    static final int ACCEPT = 2;
+
+    private final String path;
+    private SymbolTable symbolTable;
+
+    private OutputStream out = null;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int buffered = 0;
+    // 已写出的字节数, 不含缓冲区中的部分
+    private long flushed = 0;
+    private final Map<TokenKey, Integer> tokenRefs = new HashMap<>();
+
+    /**
+     * @param path 轨迹文件路径, 每次分析都会覆盖该文件
+     */
+    public TraceRecorder(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        begin();
+        writeVarint((long) currentStatus.index() << 2 | SHIFT);
+
+        final var key = new TokenKey(currentToken.getKind(), currentToken.getText(), currentToken.getSymbolId());
+        final var ref = tokenRefs.get(key);
+        if (ref != null) {
+            writeVarint(ref);
+            return;
+        }
+        writeVarint(tokenRefs.size());
+        tokenRefs.put(key, tokenRefs.size());
+        writeVarint(currentToken.getKind().getCode() + 1);
+        writeVarint(currentToken.getSymbolId() + 1);
+        writeString(currentToken.getText());
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        begin();
+        writeVarint((long) currentStatus.index() << 2 | REDUCE);
+        writeVarint(production.index());
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        begin();
+        writeVarint((long) currentStatus.index() << 2 | ACCEPT);
+
+        final var symbolsOffset = flushed + buffered;
+        final var size = symbolTable == null ? 0 : symbolTable.size();
+        writeVarint(size);
+        for (int id = 0; id < size; id++) {
+            if (symbolTable.has(id)) {
+                final var bytes = symbolTable.get(id).getText().getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length + 1L);
+                writeBytes(bytes);
+            } else {
+                writeVarint(0);
+            }
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (symbolsOffset >>> shift));
+        }
+
+        try {
+            flush();
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when writing parse trace " + path, e);
+        } finally {
+            out = null;
+        }
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        this.symbolTable = table;
+    }
+
+    /**
+     * 一次分析的第一个事件到来时创建文件并写入文件头
+     */
+    private void begin() {
+        if (out != null) {
+            return;
+        }
+        try {
+            out = Files.newOutputStream(Path.of(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when creating parse trace " + path, e);
+        }
+        buffered = 0;
+        flushed = 0;
+        tokenRefs.clear();
+        for (final var word : new int[]{MAGIC, VERSION}) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(word >>> shift);
+            }
+        }
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeString(String text) {
+        final var bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        for (final var b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) {
+        if (buffered == buffer.length) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new RuntimeException("IO Exception when writing parse trace " + path, e);
+            }
+        }
+        buffer[buffered++] = (byte) b;
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, buffered);
+        flushed += buffered;
+        buffered = 0;
+    }
+
+    private record TokenKey(TokenKind kind, String text, int symbolId) {
+    }
+}
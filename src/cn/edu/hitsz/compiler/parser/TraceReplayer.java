@@ -0,0 +1,234 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 解析轨迹的重放器
+ * <br>
+ * 读取 {@link TraceRecorder} 记录的轨迹文件 (格式见该类), 按原来的顺序向注册的观察者发出 shift, reduce 与 accept 通知,
+ * 代替词法分析与语法分析驱动语义分析, IR 生成等观察者. 轨迹文件被映射到内存后顺序解码, 每个词法单元只构造一次.
+ * <br>
+ * 打开轨迹时即由其中的符号表重建分析前的符号表, 注册观察者时交给观察者. 通知中的状态与实时分析时编号相同;
+ * 加载了分析表时就是分析表中的状态, 否则是只有编号的状态 (不含动作与转移)
+ */
+public class TraceReplayer {
+    private final String path;
+    private final ByteBuffer buffer;
+    private final int eventsBegin;
+    private final int eventsEnd;
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final List<ActionObserver> observers = new ArrayList<>();
+
+    // 按编号排列的产生式与状态, 状态按需创建
+    private final Production[] productions;
+    private Status[] statuses = new Status[0];
+
+    private TraceReplayer(String path) {
+        this.path = path;
+        this.buffer = FileUtils.mapFile(path);
+        try {
+            if (buffer.getInt() != TraceRecorder.MAGIC || buffer.getInt() != TraceRecorder.VERSION) {
+                throw new RuntimeException("Not a parse trace: " + path);
+            }
+            this.eventsBegin = buffer.position();
+            final var symbolsOffset = buffer.getLong(buffer.limit() - 8);
+            if (symbolsOffset < eventsBegin || symbolsOffset > buffer.limit() - 8) {
+                throw new RuntimeException("Corrupted parse trace: " + path);
+            }
+            this.eventsEnd = (int) symbolsOffset;
+            buffer.position(eventsEnd);
+            readSymbolTable();
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new RuntimeException("Truncated parse trace: " + path, e);
+        }
+
+        final var list = GrammarInfo.getProductionsInOrder();
+        this.productions = new Production[list.stream().mapToInt(Production::index).max().orElse(0) + 1];
+        list.forEach(production -> productions[production.index()] = production);
+    }
+
+    /**
+     * 打开轨迹文件并重建其中的符号表
+     *
+     * @param path 轨迹文件路径
+     * @return 重放器
+     */
+    public static TraceReplayer open(String path) {
+        return new TraceReplayer(path);
+    }
+
+    /**
+     * @return 由轨迹重建的分析前的符号表
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    /**
+     * 加载分析表, 之后通知中的状态取自该表. 不加载时通知中的状态只有编号
+     *
+     * @param table 记录轨迹时使用的分析表
+     */
+    public void loadLRTable(LRTable table) {
+        final var compiled = CompiledLRTable.compile(table);
+        var max = -1;
+        for (int state = 0; state < compiled.stateCount(); state++) {
+            max = Math.max(max, compiled.status(state).index());
+        }
+        statuses = new Status[max + 1];
+        for (int state = 0; state < compiled.stateCount(); state++) {
+            final var status = compiled.status(state);
+            statuses[status.index()] = status;
+        }
+    }
+
+    /**
+     * 按轨迹依次通知各观察者, 可以多次运行
+     */
+    public void run() {
+        replay(observers);
+    }
+
+    /**
+     * 输出词法单元流, 与词法分析的输出相同. 除 EOF 外每个词法单元都恰好被 shift 一次, 故按 shift 的顺序即可还原
+     *
+     * @param path 输出路径
+     */
+    public void dumpTokens(String path) {
+        final var lines = new ArrayList<String>();
+        replay(List.of(new ActionObserver() {
+            @Override
+            public void whenShift(Status currentStatus, Token currentToken) {
+                lines.add(currentToken.toString());
+            }
+
+            @Override
+            public void whenReduce(Status currentStatus, Production production) {
+            }
+
+            @Override
+            public void whenAccept(Status currentStatus) {
+                lines.add(Token.eof().toString());
+            }
+
+            @Override
+            public void setSymbolTable(SymbolTable table) {
+            }
+        }));
+        FileUtils.writeLines(path, lines);
+    }
+
+    private void replay(List<ActionObserver> observers) {
+        final var tokens = new ArrayList<Token>();
+        buffer.position(eventsBegin);
+        while (buffer.position() < eventsEnd) {
+            final var tag = readVarint();
+            final var status = status((int) (tag >>> 2));
+            switch ((int) (tag & 3)) {
+                case TraceRecorder.SHIFT -> {
+                    final var ref = (int) readVarint();
+                    if (ref == tokens.size()) {
+                        tokens.add(readToken());
+                    } else if (ref > tokens.size()) {
+                        throw new RuntimeException("Corrupted parse trace: " + path);
+                    }
+                    final var token = tokens.get(ref);
+                    for (final var observer : observers) {
+                        observer.whenShift(status, token);
+                    }
+                }
+                case TraceRecorder.REDUCE -> {
+                    final var index = (int) readVarint();
+                    if (index >= productions.length || productions[index] == null) {
+                        throw new RuntimeException("Production %d in trace not found in grammar".formatted(index));
+                    }
+                    for (final var observer : observers) {
+                        observer.whenReduce(status, productions[index]);
+                    }
+                }
+                case TraceRecorder.ACCEPT -> {
+                    for (final var observer : observers) {
+                        observer.whenAccept(status);
+                    }
+                }
+                default -> throw new RuntimeException("Corrupted parse trace: " + path);
+            }
+        }
+    }
+
+    private Token readToken() {
+        final var kind = TokenKind.fromCode((int) readVarint() - 1);
+        final var symbolId = (int) readVarint() - 1;
+        final var text = readString((int) readVarint());
+        if (symbolId >= 0) {
+            return Token.identifier(kind, text, symbolId);
+        }
+        // 没有文本的词法单元与词法分析时一样使用共享的简单 token
+        return text.isEmpty() ? Token.simple(kind) : Token.normal(kind, text);
+    }
+
+    private void readSymbolTable() {
+        final var size = (int) readVarint();
+        for (int id = 0; id < size; id++) {
+            final var length = (int) readVarint();
+            if (length > 0) {
+                symbolTable.add(readString(length - 1));
+            } else {
+                // 被移除的编号: 以不可能出现在源程序中的文本占住该编号再移除, 使之后的条目编号不变
+                symbolTable.remove(symbolTable.add("\0" + id).getText());
+            }
+        }
+    }
+
+    private Status status(int index) {
+        if (index >= statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(index + 1, statuses.length * 2));
+        }
+        if (statuses[index] == null) {
+            statuses[index] = Status.create(index);
+        }
+        return statuses[index];
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final var b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private String readString(int length) {
+        final var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,212 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 编译成稠密 int 矩阵的 LR 分析表
+ * <br>
+ * {@link LRTable#getAction(Status, cn.edu.hitsz.compiler.lexer.Token)} 每次都要在状态的 HashMap 中以终结符为键查找,
+ * 而终结符的哈希值需要对其名字的 String 求值; GOTO 同样是以非终结符为键的 HashMap 查找. 该类把两张表展开为:
+ * <ul>
+ *     <li>ACTION 矩阵: 行为状态编号, 列为终结符码点 + 1 (EOF 的码点为 -1, 占第 0 列)</li>
+ *     <li>GOTO 矩阵: 行为状态编号, 列为非终结符在分析表中的序号</li>
+ * </ul>
+ * ACTION 矩阵中的动作编码为一个 int: 低两位为动作类型 ({@link #ERROR}, {@link #SHIFT}, {@link #REDUCE}, {@link #ACCEPT}),
+ * 其余位为移入的目标状态或规约的产生式编号. GOTO 矩阵中存放目标状态编号, 出错为 -1.
+ * <br>
+ * 产生式的体长与头部序号也预先存为数组, 驱动程序只需要数组下标运算. 为了通知观察者, 该类同时保留了编号到 Status 与 Production 对象的映射.
+ */
+public final class CompiledLRTable {
+    public static final int ERROR = 0;
+    public static final int SHIFT = 1;
+    public static final int REDUCE = 2;
+    public static final int ACCEPT = 3;
+
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    /**
+     * 把 LR 分析表编译为稠密矩阵
+     *
+     * @param table LR 分析表
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable compile(LRTable table) {
+        return new CompiledLRTable(table);
+    }
+
+    /**
+     * @param action 编码后的动作
+     * @return 动作类型, 为 ERROR, SHIFT, REDUCE, ACCEPT 之一
+     */
+    public static int kindOf(int action) {
+        return action & KIND_MASK;
+    }
+
+    /**
+     * @param action 编码后的动作
+     * @return 移入动作的目标状态, 或规约动作的产生式编号
+     */
+    public static int operandOf(int action) {
+        return action >>> KIND_BITS;
+    }
+
+    /**
+     * @param state        状态编号
+     * @param terminalCode 终结符码点, EOF 为 -1
+     * @return 编码后的动作; 码点不在表中时为 ERROR
+     */
+    public int action(int state, int terminalCode) {
+        final var column = terminalCode + 1;
+        if (column < 0 || column >= terminalColumns) {
+            return ERROR;
+        }
+        return actions[state * terminalColumns + column];
+    }
+
+    /**
+     * @param state               状态编号
+     * @param nonTerminalOrdinal  非终结符序号
+     * @return 转移到的状态编号, 出错时为 -1
+     */
+    public int gotoState(int state, int nonTerminalOrdinal) {
+        return gotos[state * nonTerminalCount + nonTerminalOrdinal];
+    }
+
+    /**
+     * @return 起始状态编号
+     */
+    public int initState() {
+        return initState;
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式体的长度
+     */
+    public int bodyLength(int production) {
+        return bodyLengths[production];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式头部的非终结符序号
+     */
+    public int headOrdinal(int production) {
+        return headOrdinals[production];
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 该编号对应的 Status 对象
+     */
+    public Status status(int state) {
+        return statuses[state];
+    }
+
+    /**
+     * @param production 产生式编号
+     * @return 该编号对应的 Production 对象
+     */
+    public Production production(int production) {
+        return productions[production];
+    }
+
+    public int stateCount() {
+        return statuses.length;
+    }
+
+    /**
+     * @return ACTION 矩阵的列数, 即最大终结符码点 + 2
+     */
+    public int terminalColumns() {
+        return terminalColumns;
+    }
+
+    public int nonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    public int productionCount() {
+        return productions.length;
+    }
+
+    /**
+     * @return 两个矩阵及其辅助数组占用的字节数
+     */
+    public long footprintBytes() {
+        return 4L * (actions.length + gotos.length + bodyLengths.length + headOrdinals.length);
+    }
+
+    private final int terminalColumns;
+    private final int nonTerminalCount;
+    private final int[] actions;
+    private final int[] gotos;
+    private final int[] bodyLengths;
+    private final int[] headOrdinals;
+    private final Status[] statuses;
+    private final Production[] productions;
+    private final int initState;
+
+    private CompiledLRTable(LRTable table) {
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+        final var statusList = table.getStatusInIndexOrder();
+
+        final var stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        this.terminalColumns = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1) + 2;
+        this.nonTerminalCount = nonTerminals.size();
+        this.actions = new int[stateCount * terminalColumns];
+        this.gotos = new int[stateCount * nonTerminalCount];
+        Arrays.fill(gotos, -1);
+        this.statuses = new Status[stateCount];
+        this.initState = table.getInit().index();
+
+        final var ordinals = new HashMap<NonTerminal, Integer>();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            ordinals.put(nonTerminals.get(i), i);
+        }
+
+        final var productionList = GrammarInfo.getProductionsInOrder();
+        final var maxProduction = productionList.stream().mapToInt(Production::index).max().orElse(0);
+        this.bodyLengths = new int[maxProduction + 1];
+        this.headOrdinals = new int[maxProduction + 1];
+        this.productions = new Production[maxProduction + 1];
+        for (final var production : productionList) {
+            productions[production.index()] = production;
+            bodyLengths[production.index()] = production.body().size();
+            headOrdinals[production.index()] = ordinals.getOrDefault(production.head(), -1);
+        }
+
+        for (final var status : statusList) {
+            final var state = status.index();
+            statuses[state] = status;
+
+            for (final var terminal : terminals) {
+                actions[state * terminalColumns + terminal.getCode() + 1] = encode(status.getAction(terminal));
+            }
+            for (int k = 0; k < nonTerminalCount; k++) {
+                final var target = status.getGoto(nonTerminals.get(k));
+                if (!target.isError()) {
+                    gotos[state * nonTerminalCount + k] = target.index();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param action 动作
+     * @return 按本类格式编码后的动作
+     */
+    static int encode(Action action) {
+        return switch (action.getKind()) {
+            case Shift -> action.getStatus().index() << KIND_BITS | SHIFT;
+            case Reduce -> action.getProduction().index() << KIND_BITS | REDUCE;
+            case Accept -> ACCEPT;
+            case Error -> ERROR;
+        };
+    }
+}
@@ -21,6 +21,19 @@ public class GrammarInfo {
         return nonTerminals.get(name);
     }
 
+    private GrammarInfo(List<Production> productionsInOrder) {
+        for (final var production : productionsInOrder) {
+            nonTerminals.putIfAbsent(production.head().getTermName(), production.head());
+            for (final var term : production.body()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    nonTerminals.putIfAbsent(nonTerminal.getTermName(), nonTerminal);
+                }
+            }
+            this.productionsInOrder.add(production);
+            productions.put(production.toString(), production);
+        }
+    }
+
     private GrammarInfo() {
         final var lines = FileUtils.readLines(FilePathConfig.GRAMMAR_PATH);
         for (int idx = 0; idx < lines.size(); idx++) {
@@ -62,6 +75,19 @@ public class GrammarInfo {
         return instance;
     }
 
+    /**
+     * 直接以给定的产生式作为语法, 不再读取语法文件, 供预先生成的分析表类使用
+     *
+     * @param productionsInOrder 按行号排列的产生式
+     */
+    static void load(List<Production> productionsInOrder) {
+        if (instance != null) {
+            throw new RuntimeException("Grammar has already been loaded");
+        }
+
+        instance = new GrammarInfo(productionsInOrder);
+    }
+
     public static Map<String, NonTerminal> getNonTerminals() {
         return Collections.unmodifiableMap(getInstance().nonTerminals);
     }
@@ -0,0 +1,351 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 文法的 nullable, FIRST 与 FOLLOW 集合
+ * <br>
+ * 终结符按码点稠密编号 (EOF 的码点为 -1, 编号为 0), 非终结符按在文法中首次出现的顺序编号, 终结符集合存为 long[] 位图.
+ * 三种集合都以工作表迭代到不动点, 每个集合变大时只重新处理依赖它的非终结符:
+ * <ul>
+ *     <li>nullable: 每条产生式记录体中尚未确定可空的符号个数, 减到 0 时其头部可空</li>
+ *     <li>FIRST: 对 A -> X1 ... Xn, 若 X1 ... Xi-1 均可空, 则 FIRST(Xi) 流向 FIRST(A)</li>
+ *     <li>FOLLOW: 对 A -> α B β, FIRST(β) 直接加入 FOLLOW(B); 若 β 可空, 则 FOLLOW(A) 流向 FOLLOW(B).
+ *     增广产生式的头部的 FOLLOW 为 EOF</li>
+ * </ul>
+ */
+public final class GrammarSets {
+    /**
+     * 计算文法的各个集合
+     *
+     * @param productions 产生式列表, 第一条为增广产生式
+     * @param terminals   终结符 (含 EOF)
+     * @return 计算结果
+     */
+    public static GrammarSets compute(List<Production> productions, Collection<TokenKind> terminals) {
+        return new GrammarSets(productions, terminals);
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return 是否能推导出空串
+     */
+    public boolean isNullable(NonTerminal nonTerminal) {
+        return nullable[nonTerminalIndex.get(nonTerminal)];
+    }
+
+    /**
+     * @param term 文法符号
+     * @return FIRST 集合
+     */
+    public Set<TokenKind> first(Term term) {
+        if (term instanceof TokenKind kind) {
+            return Set.of(kind);
+        }
+        return toSet(first[nonTerminalIndex.get((NonTerminal) term)]);
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return FOLLOW 集合
+     */
+    public Set<TokenKind> follow(NonTerminal nonTerminal) {
+        return toSet(follow[nonTerminalIndex.get(nonTerminal)]);
+    }
+
+    /**
+     * @return 计算三种集合所用的时间 (纳秒)
+     */
+    public long computeNanos() {
+        return computeNanos;
+    }
+
+    //==================== 供表构造程序使用的整数接口 ==============================//
+
+    TokenKind[] terminals() {
+        return terminals;
+    }
+
+    NonTerminal[] nonTerminals() {
+        return nonTerminals;
+    }
+
+    int terminalIndex(TokenKind kind) {
+        return terminalIndex.get(kind);
+    }
+
+    int nonTerminalIndex(NonTerminal nonTerminal) {
+        return nonTerminalIndex.get(nonTerminal);
+    }
+
+    /**
+     * @return 每个终结符位图的 long 个数
+     */
+    int words() {
+        return words;
+    }
+
+    boolean isNullable(int nonTerminal) {
+        return nullable[nonTerminal];
+    }
+
+    long[] firstBits(int nonTerminal) {
+        return first[nonTerminal];
+    }
+
+    long[] followBits(int nonTerminal) {
+        return follow[nonTerminal];
+    }
+
+    private final TokenKind[] terminals;
+    private final NonTerminal[] nonTerminals;
+    private final Map<TokenKind, Integer> terminalIndex = new HashMap<>();
+    private final Map<NonTerminal, Integer> nonTerminalIndex = new HashMap<>();
+    private final int words;
+
+    // 产生式体, 终结符编码为 -1 - 编号, 非终结符编码为其编号
+    private final int[][] bodies;
+    private final int[] heads;
+
+    private final boolean[] nullable;
+    private final long[][] first;
+    private final long[][] follow;
+    private final long computeNanos;
+
+    private GrammarSets(List<Production> productions, Collection<TokenKind> terminals) {
+        final var start = System.nanoTime();
+
+        this.terminals = terminals.stream()
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toArray(TokenKind[]::new);
+        for (int t = 0; t < this.terminals.length; t++) {
+            terminalIndex.put(this.terminals[t], t);
+        }
+        this.words = (this.terminals.length + 63) >>> 6;
+
+        final var ordered = new LinkedHashMap<NonTerminal, Integer>();
+        for (final var production : productions) {
+            ordered.putIfAbsent(production.head(), ordered.size());
+            for (final var term : production.body()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    ordered.putIfAbsent(nonTerminal, ordered.size());
+                }
+            }
+        }
+        this.nonTerminals = ordered.keySet().toArray(new NonTerminal[0]);
+        this.nonTerminalIndex.putAll(ordered);
+
+        this.bodies = new int[productions.size()][];
+        this.heads = new int[productions.size()];
+        for (int p = 0; p < productions.size(); p++) {
+            final var production = productions.get(p);
+            heads[p] = nonTerminalIndex.get(production.head());
+            final var body = production.body();
+            bodies[p] = new int[body.size()];
+            for (int i = 0; i < body.size(); i++) {
+                bodies[p][i] = body.get(i) instanceof TokenKind kind
+                    ? -1 - terminalIndex.get(kind)
+                    : nonTerminalIndex.get((NonTerminal) body.get(i));
+            }
+        }
+
+        this.nullable = new boolean[nonTerminals.length];
+        this.first = new long[nonTerminals.length][words];
+        this.follow = new long[nonTerminals.length][words];
+        computeNullable();
+        computeFirst();
+        computeFollow(productions.isEmpty() ? -1 : heads[0]);
+
+        this.computeNanos = System.nanoTime() - start;
+    }
+
+    private void computeNullable() {
+        // 每条产生式体中尚未确定可空的符号个数; 含终结符的产生式永远不会减到 0
+        final var remaining = new int[bodies.length];
+        final var occurrences = new IntLists(nonTerminals.length);
+        final var worklist = new ArrayDeque<Integer>();
+        for (int p = 0; p < bodies.length; p++) {
+            remaining[p] = bodies[p].length;
+            for (final var symbol : bodies[p]) {
+                if (symbol >= 0) {
+                    occurrences.add(symbol, p);
+                }
+            }
+            if (remaining[p] == 0 && !nullable[heads[p]]) {
+                nullable[heads[p]] = true;
+                worklist.add(heads[p]);
+            }
+        }
+        final var lists = occurrences.toArrays();
+
+        while (!worklist.isEmpty()) {
+            final int symbol = worklist.poll();
+            for (final var p : lists[symbol]) {
+                // 一个符号在同一产生式体中出现几次, 这里就会被处理几次, 恰好与计数对应
+                if (--remaining[p] == 0 && !nullable[heads[p]]) {
+                    nullable[heads[p]] = true;
+                    worklist.add(heads[p]);
+                }
+            }
+        }
+    }
+
+    private void computeFirst() {
+        // dependents[B] 为 FIRST(B) 需要流向的非终结符
+        final var dependents = new IntLists(nonTerminals.length);
+        for (int p = 0; p < bodies.length; p++) {
+            final var head = heads[p];
+            for (final var symbol : bodies[p]) {
+                if (symbol < 0) {
+                    setBit(first[head], -1 - symbol);
+                    break;
+                }
+                if (symbol != head) {
+                    dependents.add(symbol, head);
+                }
+                if (!nullable[symbol]) {
+                    break;
+                }
+            }
+        }
+        propagate(first, dependents.toArrays());
+    }
+
+    private void computeFollow(int startSymbol) {
+        final var dependents = new IntLists(nonTerminals.length);
+        if (startSymbol >= 0) {
+            setBit(follow[startSymbol], terminalIndex.get(TokenKind.eof()));
+        }
+
+        for (int p = 0; p < bodies.length; p++) {
+            final var body = bodies[p];
+            // 从右向左扫描, trailer 为当前位置之后的符号串的 FIRST, trailerNullable 为其是否可空
+            final var trailer = new long[words];
+            var trailerNullable = true;
+            for (int i = body.length - 1; i >= 0; i--) {
+                final var symbol = body[i];
+                if (symbol < 0) {
+                    Arrays.fill(trailer, 0);
+                    setBit(trailer, -1 - symbol);
+                    trailerNullable = false;
+                    continue;
+                }
+
+                or(follow[symbol], trailer);
+                if (trailerNullable && symbol != heads[p]) {
+                    dependents.add(heads[p], symbol);
+                }
+                if (nullable[symbol]) {
+                    or(trailer, first[symbol]);
+                } else {
+                    System.arraycopy(first[symbol], 0, trailer, 0, words);
+                    trailerNullable = false;
+                }
+            }
+        }
+        propagate(follow, dependents.toArrays());
+    }
+
+    /**
+     * 沿依赖边把集合传播到不动点: 集合 sets[x] 变大后, 重新并入所有 dependents[x] 中
+     */
+    private void propagate(long[][] sets, int[][] dependents) {
+        final var queued = new boolean[sets.length];
+        final var worklist = new ArrayDeque<Integer>();
+        for (int x = 0; x < sets.length; x++) {
+            queued[x] = true;
+            worklist.add(x);
+        }
+        while (!worklist.isEmpty()) {
+            final int x = worklist.poll();
+            queued[x] = false;
+            for (final var y : dependents[x]) {
+                if (or(sets[y], sets[x]) && !queued[y]) {
+                    queued[y] = true;
+                    worklist.add(y);
+                }
+            }
+        }
+    }
+
+    private Set<TokenKind> toSet(long[] bits) {
+        final var result = new LinkedHashSet<TokenKind>();
+        for (int w = 0; w < words; w++) {
+            for (var rest = bits[w]; rest != 0; rest &= rest - 1) {
+                result.add(terminals[(w << 6) + Long.numberOfTrailingZeros(rest)]);
+            }
+        }
+        return result;
+    }
+
+    static boolean setBit(long[] set, int bit) {
+        final var old = set[bit >>> 6];
+        set[bit >>> 6] = old | 1L << bit;
+        return set[bit >>> 6] != old;
+    }
+
+    /**
+     * @return target 是否因此发生了变化
+     */
+    static boolean or(long[] target, long[] source) {
+        var changed = false;
+        for (int i = 0; i < target.length; i++) {
+            final var merged = target[i] | source[i];
+            if (merged != target[i]) {
+                target[i] = merged;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 按结点分组的 int 列表, 最后转换为邻接表
+     */
+    static final class IntLists {
+        private final int nodes;
+        private int[] keys = new int[64];
+        private int[] values = new int[64];
+        private int size = 0;
+
+        IntLists(int nodes) {
+            this.nodes = nodes;
+        }
+
+        void add(int key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size++] = value;
+        }
+
+        int[][] toArrays() {
+            final var counts = new int[nodes];
+            for (int i = 0; i < size; i++) {
+                counts[keys[i]]++;
+            }
+            final var result = new int[nodes][];
+            for (int x = 0; x < nodes; x++) {
+                result[x] = new int[counts[x]];
+                counts[x] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                result[keys[i]][counts[keys[i]]++] = values[i];
+            }
+            return result;
+        }
+    }
+}
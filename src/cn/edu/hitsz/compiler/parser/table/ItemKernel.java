@@ -0,0 +1,47 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.Arrays;
+
+/**
+ * 项目集的核心, 用于识别相同的项目集
+ * <br>
+ * 项目集由其核心项目唯一确定, 因此不需要以整个闭包作为键. 核心项目存为升序排列的项目编号数组,
+ * 规范 LR(1) 时另有各核心项目的向前看符号位图 (按核心项目的顺序依次拼接). 哈希值在构造时一次算好,
+ * 比较时先比较哈希值, 不同的核心几乎不会走到逐元素比较.
+ */
+final class ItemKernel {
+    /**
+     * @param items      升序排列的核心项目编号, 调用者之后不能再修改该数组
+     * @param lookaheads 各核心项目的向前看符号位图, 没有时为 null
+     */
+    ItemKernel(int[] items, long[] lookaheads) {
+        this.items = items;
+        this.lookaheads = lookaheads;
+        this.hash = 31 * Arrays.hashCode(items) + Arrays.hashCode(lookaheads);
+    }
+
+    int[] items() {
+        return items;
+    }
+
+    long[] lookaheads() {
+        return lookaheads;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ItemKernel kernel
+            && kernel.hash == hash
+            && Arrays.equals(kernel.items, items)
+            && Arrays.equals(kernel.lookaheads, lookaheads);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private final int[] items;
+    private final long[] lookaheads;
+    private final int hash;
+}
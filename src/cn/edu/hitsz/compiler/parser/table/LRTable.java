@@ -85,4 +85,16 @@ public class LRTable {
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
+
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
+
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
 }
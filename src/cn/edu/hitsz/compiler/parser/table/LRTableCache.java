@@ -0,0 +1,269 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LR 分析表的二进制缓存
+ * <br>
+ * {@link TableLoader} 每次运行都要切分整个 CSV, 并以产生式全文在 {@link GrammarInfo} 中查找每个 reduce 单元格.
+ * 该类在第一次读取后把分析表写成紧凑的二进制格式, 之后的运行直接内存映射该文件, 按下标重建 LRTable.
+ * <br>
+ * 缓存文件头部记录了 grammar.txt, coding_map.csv 与分析表 CSV 三者内容的 SHA-256 摘要,
+ * 任一输入发生变化 (或缓存文件损坏) 时摘要不再匹配, 缓存会被自动丢弃并由 CSV 重新生成.
+ * <br>
+ * 二进制格式 (大端序):
+ * <pre>
+ *     int    魔数 "LRTB", int 版本号, byte[32] 输入摘要
+ *     int    终结符个数 T, 之后每个终结符为 short 长度 + UTF-8 标识符
+ *     int    非终结符个数 N, 之后每个非终结符同上
+ *     int    状态个数 S, 之后为 S 个状态编号 (按分析表中的顺序)
+ *     int[S × T] ACTION 表, 编码同 {@link CompiledLRTable}
+ *     int[S × N] GOTO 表, 出错为 -1
+ * </pre>
+ */
+public final class LRTableCache {
+    private static final int MAGIC = 0x4C525442;
+    private static final int VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * 读取分析表, 缓存有效时从缓存读取, 否则读取 CSV 并重新生成缓存
+     * <br>
+     * 写缓存失败不影响本次读取的结果
+     *
+     * @param csvPath CSV 格式的分析表路径
+     * @return LRTable
+     */
+    public static LRTable load(String csvPath) {
+        return load(csvPath, FilePathConfig.LR1_TABLE_CACHE_PATH);
+    }
+
+    /**
+     * @param csvPath   CSV 格式的分析表路径
+     * @param cachePath 缓存文件路径
+     * @return LRTable
+     */
+    public static LRTable load(String csvPath, String cachePath) {
+        final var digest = digestOf(FilePathConfig.GRAMMAR_PATH, FilePathConfig.CODING_MAP_PATH, csvPath);
+
+        final var cached = tryRead(cachePath, digest);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var table = new TableLoader().load(csvPath);
+        try {
+            write(table, digest, Path.of(cachePath));
+        } catch (IOException e) {
+            System.err.println("Failed to write LR table cache: " + e);
+        }
+        return table;
+    }
+
+    /**
+     * 把分析表写为二进制格式. 先写入临时文件再替换, 避免其它进程读到写了一半的缓存
+     *
+     * @param table  分析表
+     * @param digest 输入摘要
+     * @param path   缓存文件路径
+     */
+    static void write(LRTable table, byte[] digest, Path path) throws IOException {
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+        final var statuses = table.getStatusInIndexOrder();
+
+        final var names = new ArrayList<byte[]>();
+        terminals.forEach(terminal -> names.add(terminal.getIdentifier().getBytes(StandardCharsets.UTF_8)));
+        nonTerminals.forEach(nonTerminal -> names.add(nonTerminal.getTermName().getBytes(StandardCharsets.UTF_8)));
+
+        final var size = 4 + 4 + DIGEST_LENGTH
+            + 4 + 4 + names.stream().mapToInt(name -> 2 + name.length).sum()
+            + 4 + 4 * statuses.size()
+            + 4 * statuses.size() * (terminals.size() + nonTerminals.size());
+        final var buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(MAGIC).putInt(VERSION).put(digest);
+        buffer.putInt(terminals.size());
+        names.subList(0, terminals.size()).forEach(name -> buffer.putShort((short) name.length).put(name));
+        buffer.putInt(nonTerminals.size());
+        names.subList(terminals.size(), names.size()).forEach(name -> buffer.putShort((short) name.length).put(name));
+
+        buffer.putInt(statuses.size());
+        statuses.forEach(status -> buffer.putInt(status.index()));
+        for (final var status : statuses) {
+            for (final var terminal : terminals) {
+                buffer.putInt(CompiledLRTable.encode(status.getAction(terminal)));
+            }
+        }
+        for (final var status : statuses) {
+            for (final var nonTerminal : nonTerminals) {
+                final var target = status.getGoto(nonTerminal);
+                buffer.putInt(target.isError() ? -1 : target.index());
+            }
+        }
+
+        final var parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final var temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return 缓存有效时重建出的分析表, 缓存不存在, 已过期或已损坏时为 null
+     */
+    static LRTable tryRead(String cachePath, byte[] digest) {
+        if (!Files.isRegularFile(Path.of(cachePath))) {
+            return null;
+        }
+
+        try {
+            final var buffer = FileUtils.mapFile(cachePath);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            final var stored = new byte[DIGEST_LENGTH];
+            buffer.get(stored);
+            if (!Arrays.equals(stored, digest)) {
+                return null;
+            }
+            return decode(buffer);
+        } catch (RuntimeException e) {
+            // 截断或内容不一致的缓存文件与过期的缓存同样处理
+            return null;
+        }
+    }
+
+    private static LRTable decode(ByteBuffer buffer) {
+        final var terminals = new ArrayList<TokenKind>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            terminals.add(TokenKind.fromString(readName(buffer)));
+        }
+        final var nonTerminals = new ArrayList<NonTerminal>();
+        for (int i = buffer.getInt(); i > 0; i--) {
+            nonTerminals.add(new NonTerminal(readName(buffer)));
+        }
+
+        final var indices = readInts(buffer, buffer.getInt());
+        final var actions = readInts(buffer, indices.length * terminals.size());
+        final var gotos = readInts(buffer, indices.length * nonTerminals.size());
+        return assemble(terminals, nonTerminals, indices, actions, gotos);
+    }
+
+    /**
+     * 由按状态顺序排列的整数数组重建 LRTable, 相同的动作共享同一个对象
+     *
+     * @param terminals    终结符, 即 ACTION 表的列
+     * @param nonTerminals 非终结符, 即 GOTO 表的列
+     * @param indices      各状态的编号
+     * @param actions      ACTION 表, 行优先, 编码同 {@link CompiledLRTable}
+     * @param gotos        GOTO 表, 行优先, 出错为 -1
+     * @return LRTable
+     */
+    static LRTable assemble(List<TokenKind> terminals, List<NonTerminal> nonTerminals,
+                            int[] indices, int[] actions, int[] gotos) {
+        final var statuses = new ArrayList<Status>(indices.length);
+        final var byIndex = new Status[Arrays.stream(indices).max().orElse(-1) + 1];
+        final var shifts = new Action[byIndex.length];
+        for (final var index : indices) {
+            final var status = Status.create(index);
+            statuses.add(status);
+            byIndex[index] = status;
+            shifts[index] = Action.shift(status);
+        }
+        final var productions = productionsByIndex();
+        final var reduces = new Action[productions.length];
+        for (int i = 0; i < productions.length; i++) {
+            if (productions[i] != null) {
+                reduces[i] = Action.reduce(productions[i]);
+            }
+        }
+
+        var cell = 0;
+        for (final var status : statuses) {
+            for (final var terminal : terminals) {
+                final var action = actions[cell++];
+                final var operand = CompiledLRTable.operandOf(action);
+                status.setAction(terminal, switch (CompiledLRTable.kindOf(action)) {
+                    case CompiledLRTable.SHIFT -> shifts[operand];
+                    case CompiledLRTable.REDUCE -> reduces[operand];
+                    case CompiledLRTable.ACCEPT -> Action.accept();
+                    default -> Action.error();
+                });
+            }
+        }
+        cell = 0;
+        for (final var status : statuses) {
+            for (final var nonTerminal : nonTerminals) {
+                final var target = gotos[cell++];
+                status.setGoto(nonTerminal, target < 0 ? Status.error() : byIndex[target]);
+            }
+        }
+
+        return new LRTable(statuses, terminals, nonTerminals);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        final var ints = new int[count];
+        buffer.asIntBuffer().get(ints);
+        buffer.position(buffer.position() + 4 * count);
+        return ints;
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        final var bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Production[] productionsByIndex() {
+        final var list = GrammarInfo.getProductionsInOrder();
+        final var productions = new Production[list.stream().mapToInt(Production::index).max().orElse(0) + 1];
+        list.forEach(production -> productions[production.index()] = production);
+        return productions;
+    }
+
+    /**
+     * @param paths 输入文件
+     * @return 依次对各文件的长度与内容求出的 SHA-256 摘要
+     */
+    static byte[] digestOf(String... paths) {
+        try {
+            final var sha = MessageDigest.getInstance("SHA-256");
+            for (final var path : List.of(paths)) {
+                final var bytes = Files.readAllBytes(Path.of(path));
+                sha.update(ByteBuffer.allocate(8).putLong(bytes.length).array());
+                sha.update(bytes);
+            }
+            return sha.digest();
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found: " + e.getFile(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when hashing LR table inputs", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private LRTableCache() {
+    }
+}
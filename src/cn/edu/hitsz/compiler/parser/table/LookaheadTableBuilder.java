@@ -0,0 +1,824 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 构造 LR 分析表: SLR(1), LALR(1) 与规范 LR(1)
+ * <br>
+ * 为了让集合运算足够快, 构造过程全部在整数上进行:
+ * <ul>
+ *     <li>终结符稠密编号为 0 ~ T-1, 非终结符编号为 T ~ T+N-1, 终结符集合为 long[] 位图</li>
+ *     <li>每条产生式的每个点的位置对应一个项目编号, 项目 + 1 即为点后移一位的项目</li>
+ *     <li>项目集以 {@link ItemKernel} 标识, 即排好序的核心项目数组及预先算好的哈希值</li>
+ *     <li>每个非终结符的 LR(0) 闭包预先算好, 项目集的闭包只需合并核心项目点后各非终结符的闭包</li>
+ * </ul>
+ * SLR(1) 与 LALR(1) 共用同一个 LR(0) 项目集族, 前者规约项目的向前看符号直接取头部的 FOLLOW 集合.
+ * <br>
+ * LALR(1) 先构造 LR(0) 项目集族并记录所有转移, 再按 DeRemer 与 Pennello 的方法计算向前看符号:
+ * 对每个非终结符转移 (p, A) 求直接读集 DR, 沿 reads 关系求闭包得到 Read, 再沿 includes 关系求闭包得到 Follow,
+ * 最后规约项目的向前看符号为其 lookback 关系所指各转移的 Follow 之并. 两次闭包都用 digraph 算法在线性时间内完成,
+ * 不需要构造规范 LR(1) 项目集族再合并同心项.
+ * <br>
+ * 规范 LR(1) 的每个项目带有一个向前看符号位图, 核心项目及其位图均相同的项目集才是同一个状态.
+ * <br>
+ * 冲突由 {@link Status#setAction(TokenKind, Action)} 检测并抛出异常.
+ */
+final class LookaheadTableBuilder {
+    /**
+     * @param productions 产生式列表, 第一条为增广产生式 S' -> S
+     * @param sets        该文法的 nullable 与 FIRST 集合, 终结符与非终结符的编号也取自其中
+     */
+    LookaheadTableBuilder(List<Production> productions, GrammarSets sets) {
+        this.productions = productions.toArray(new Production[0]);
+        this.sets = sets;
+        this.terminals = sets.terminals();
+        this.nonTerminals = sets.nonTerminals();
+        this.eof = sets.terminalIndex(TokenKind.eof());
+        this.words = sets.words();
+
+        encodeGrammar();
+        computeNonTerminalClosures();
+        computeSuffixFirst();
+    }
+
+    /**
+     * 构造 SLR(1) 分析表: 规约项目的向前看符号为其头部的 FOLLOW 集合
+     *
+     * @return 按编号排列的状态
+     */
+    List<Status> buildSLR() {
+        buildLR0();
+        for (int state = 0; state < closures.size(); state++) {
+            final var closure = closures.get(state);
+            final var lookaheads = new long[closure.length][];
+            for (int i = 0; i < closure.length; i++) {
+                if (itemNext[closure[i]] < 0) {
+                    lookaheads[i] = sets.followBits(heads[itemProduction[closure[i]]]);
+                }
+            }
+            closureLookaheads.set(state, lookaheads);
+        }
+        return fillTable();
+    }
+
+    /**
+     * 构造 LALR(1) 分析表
+     *
+     * @return 按编号排列的状态
+     */
+    List<Status> buildLALR() {
+        buildLR0();
+        computeLALRLookaheads();
+        return fillTable();
+    }
+
+    /**
+     * 构造规范 LR(1) 分析表
+     *
+     * @return 按编号排列的状态
+     */
+    List<Status> buildCanonical() {
+        buildLR1();
+        return fillTable();
+    }
+
+    /**
+     * @return 各状态的项目, 规约项目附带其向前看符号, 用于调试
+     */
+    List<String> itemLines() {
+        final var lines = new ArrayList<String>();
+        for (int state = 0; state < closures.size(); state++) {
+            lines.add("%d: ".formatted(state));
+            final var items = closures.get(state);
+            final var lookaheads = closureLookaheads.get(state);
+            for (int i = 0; i < items.length; i++) {
+                final var line = new StringBuilder("    ").append(itemToString(items[i]));
+                if (lookaheads != null && lookaheads[i] != null) {
+                    line.append(", ").append(setToString(lookaheads[i]));
+                }
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return 构造项目集族时记录下的所有转移, 按源状态排列, 同一状态内终结符在前, 非终结符在后
+     */
+    List<Transition> transitions() {
+        final var t = terminals.length;
+        final var edges = new ArrayList<Transition>();
+        for (int state = 0; state < transitionSymbols.size(); state++) {
+            final var symbols = transitionSymbols.get(state);
+            final var targets = transitionTargets.get(state);
+            for (int i = 0; i < symbols.length; i++) {
+                final Term symbol = symbols[i] < t ? terminals[symbols[i]] : nonTerminals[symbols[i] - t];
+                edges.add(new Transition(state, symbol, targets[i]));
+            }
+        }
+        return edges;
+    }
+
+    //==================== 文法的整数编码 ==============================//
+
+    private final Production[] productions;
+    private final GrammarSets sets;
+    private final TokenKind[] terminals;
+    private final NonTerminal[] nonTerminals;
+    private final int eof;
+    private final int words;
+
+    private int[][] bodies;
+    private int[] heads;
+    private int[][] byHead;
+    // 每个非终结符的 LR(0) 闭包: 由它出发沿产生式体的第一个符号可以展开到的所有产生式的初始项目, 升序排列
+    private int[][] nonTerminalClosures;
+    private int[] itemBase;
+    private int[] itemProduction;
+    // 点后面的符号, 点在末尾时为 -1
+    private int[] itemNext;
+
+    // 从项目的点开始到产生式末尾的符号串的 FIRST 集合与可空性
+    private long[][] suffixFirst;
+    private boolean[] suffixNullable;
+
+    private void encodeGrammar() {
+        final var t = terminals.length;
+        bodies = new int[productions.length][];
+        heads = new int[productions.length];
+        itemBase = new int[productions.length];
+        final var headCounts = new int[nonTerminals.length];
+
+        var items = 0;
+        for (int p = 0; p < productions.length; p++) {
+            final var body = productions[p].body();
+            bodies[p] = new int[body.size()];
+            for (int i = 0; i < body.size(); i++) {
+                bodies[p][i] = body.get(i) instanceof TokenKind kind
+                    ? sets.terminalIndex(kind)
+                    : t + sets.nonTerminalIndex((NonTerminal) body.get(i));
+            }
+            itemBase[p] = items;
+            items += body.size() + 1;
+            heads[p] = sets.nonTerminalIndex(productions[p].head());
+            headCounts[heads[p]]++;
+        }
+
+        byHead = new int[nonTerminals.length][];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            byHead[n] = new int[headCounts[n]];
+            headCounts[n] = 0;
+        }
+        for (int p = 0; p < productions.length; p++) {
+            byHead[heads[p]][headCounts[heads[p]]++] = p;
+        }
+
+        itemProduction = new int[items];
+        itemNext = new int[items];
+        for (int p = 0; p < productions.length; p++) {
+            for (int dot = 0; dot <= bodies[p].length; dot++) {
+                itemProduction[itemBase[p] + dot] = p;
+                itemNext[itemBase[p] + dot] = dot < bodies[p].length ? bodies[p][dot] : -1;
+            }
+        }
+    }
+
+    private void computeNonTerminalClosures() {
+        final var t = terminals.length;
+        nonTerminalClosures = new int[nonTerminals.length][];
+        final var visited = new int[nonTerminals.length];
+        Arrays.fill(visited, -1);
+        final var stack = new int[nonTerminals.length];
+
+        for (int n = 0; n < nonTerminals.length; n++) {
+            var items = new int[16];
+            var size = 0;
+            var top = 0;
+            stack[top++] = n;
+            visited[n] = n;
+            while (top > 0) {
+                final var current = stack[--top];
+                for (final var p : byHead[current]) {
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, size * 2);
+                    }
+                    items[size++] = itemBase[p];
+                    final var first = itemNext[itemBase[p]];
+                    if (first >= t && visited[first - t] != n) {
+                        visited[first - t] = n;
+                        stack[top++] = first - t;
+                    }
+                }
+            }
+            nonTerminalClosures[n] = Arrays.copyOf(items, size);
+            Arrays.sort(nonTerminalClosures[n]);
+        }
+    }
+
+    private void computeSuffixFirst() {
+        final var t = terminals.length;
+        suffixFirst = new long[itemNext.length][];
+        suffixNullable = new boolean[itemNext.length];
+        for (int p = 0; p < productions.length; p++) {
+            final var end = itemBase[p] + bodies[p].length;
+            suffixFirst[end] = new long[words];
+            suffixNullable[end] = true;
+            for (int item = end - 1; item >= itemBase[p]; item--) {
+                final var symbol = itemNext[item];
+                if (symbol < t) {
+                    suffixFirst[item] = new long[words];
+                    GrammarSets.setBit(suffixFirst[item], symbol);
+                    suffixNullable[item] = false;
+                } else {
+                    suffixFirst[item] = sets.firstBits(symbol - t).clone();
+                    if (sets.isNullable(symbol - t)) {
+                        GrammarSets.or(suffixFirst[item], suffixFirst[item + 1]);
+                        suffixNullable[item] = suffixNullable[item + 1];
+                    }
+                }
+            }
+        }
+    }
+
+    //==================== 项目集族 ==============================//
+
+    private final Map<ItemKernel, Integer> stateOf = new HashMap<>();
+    private final List<ItemKernel> kernels = new ArrayList<>();
+    private final List<int[]> closures = new ArrayList<>();
+    // 规范 LR(1) 时为闭包中各项目的向前看符号; LALR(1) 时只有规约项目有值
+    private final List<long[][]> closureLookaheads = new ArrayList<>();
+    // 每个状态的转移, 按符号升序排列
+    private final List<int[]> transitionSymbols = new ArrayList<>();
+    private final List<int[]> transitionTargets = new ArrayList<>();
+
+    // 构造项目集族的线程数, 为 1 时顺序构造
+    private int parallelism = 1;
+
+    /**
+     * @param parallelism 构造项目集族的线程数, 大于 1 时以 {@link #buildCollectionParallel(ItemKernel)} 构造
+     */
+    void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 求闭包时使用的临时数组. 每求一次闭包换一个新的标记值, 数组不需要清空; 并行构造时每个线程各有一份
+     */
+    private final class Workspace {
+        private final int[] itemMark = new int[itemNext.length];
+        private final int[] itemPosition = new int[itemNext.length];
+        private final int[] nonTerminalMark = new int[nonTerminals.length];
+        private int stamp = 0;
+    }
+
+    /**
+     * 展开一个状态的结果
+     *
+     * @param closure    闭包
+     * @param lookaheads 闭包中各项目的向前看符号, LR(0) 项目集时为 null
+     * @param symbols    转移符号, 升序排列
+     * @param successors 各转移符号对应的后继核心
+     */
+    private record Expansion(int[] closure, long[][] lookaheads, int[] symbols, ItemKernel[] successors) {
+    }
+
+    private int intern(ItemKernel kernel) {
+        final var existing = stateOf.get(kernel);
+        if (existing != null) {
+            return existing;
+        }
+        final var state = kernels.size();
+        stateOf.put(kernel, state);
+        kernels.add(kernel);
+        return state;
+    }
+
+    private void buildLR0() {
+        buildCollection(new ItemKernel(new int[]{itemBase[0]}, null));
+    }
+
+    private void buildLR1() {
+        final var initLookahead = new long[words];
+        GrammarSets.setBit(initLookahead, eof);
+        buildCollection(new ItemKernel(new int[]{itemBase[0]}, initLookahead));
+    }
+
+    /**
+     * 从初始核心出发按广度优先的顺序展开所有状态, 状态按被发现的先后编号
+     */
+    private void buildCollection(ItemKernel initial) {
+        if (parallelism > 1) {
+            buildCollectionParallel(initial);
+            return;
+        }
+
+        final var workspace = new Workspace();
+        intern(initial);
+        for (int state = 0; state < kernels.size(); state++) {
+            final var expansion = expand(kernels.get(state), workspace);
+            final var targets = new int[expansion.successors().length];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = intern(expansion.successors()[i]);
+            }
+            addState(expansion, targets);
+        }
+    }
+
+    /**
+     * 并行构造项目集族
+     * <br>
+     * 各状态的展开互不依赖, 每个新发现的核心作为一个任务提交到 work-stealing 线程池中. 核心经并发的 HashMap 驻留,
+     * 只有第一个驻留成功的任务会继续展开它, 此时的临时编号取决于线程调度. 全部展开后, 从初始状态出发按转移符号的顺序
+     * 广度优先遍历重新编号, 这正是顺序构造时发现状态的顺序, 所以状态编号, 转移以及最终的分析表都与顺序构造完全相同.
+     */
+    private void buildCollectionParallel(ItemKernel initial) {
+        final var ids = new ConcurrentHashMap<ItemKernel, Integer>();
+        final var expanded = new ConcurrentHashMap<Integer, Expanded>();
+        final var nextId = new AtomicInteger();
+        final var workspaces = ThreadLocal.withInitial(Workspace::new);
+
+        @SuppressWarnings("serial")
+        final class ExpandTask extends CountedCompleter<Void> {
+            private final ItemKernel kernel;
+            private final int id;
+
+            ExpandTask(CountedCompleter<?> parent, ItemKernel kernel, int id) {
+                super(parent);
+                this.kernel = kernel;
+                this.id = id;
+            }
+
+            @Override
+            public void compute() {
+                final var expansion = expand(kernel, workspaces.get());
+                final var targets = new int[expansion.successors().length];
+                for (int i = 0; i < targets.length; i++) {
+                    final var successor = expansion.successors()[i];
+                    final var created = new boolean[1];
+                    targets[i] = ids.computeIfAbsent(successor, key -> {
+                        created[0] = true;
+                        return nextId.getAndIncrement();
+                    });
+                    if (created[0]) {
+                        addToPendingCount(1);
+                        new ExpandTask(this, successor, targets[i]).fork();
+                    }
+                }
+                expanded.put(id, new Expanded(kernel, expansion, targets));
+                tryComplete();
+            }
+        }
+
+        ids.put(initial, nextId.getAndIncrement());
+        final var pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ExpandTask(null, initial, 0));
+        } finally {
+            pool.shutdown();
+        }
+
+        final var count = nextId.get();
+        final var order = new int[count];
+        final var renumbered = new int[count];
+        Arrays.fill(renumbered, -1);
+        renumbered[0] = 0;
+        var size = 1;
+        for (int i = 0; i < size; i++) {
+            for (final var target : expanded.get(order[i]).targets()) {
+                if (renumbered[target] < 0) {
+                    renumbered[target] = size;
+                    order[size++] = target;
+                }
+            }
+        }
+
+        for (int state = 0; state < size; state++) {
+            final var result = expanded.get(order[state]);
+            stateOf.put(result.kernel(), state);
+            kernels.add(result.kernel());
+            final var targets = result.targets();
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = renumbered[targets[i]];
+            }
+            addState(result.expansion(), targets);
+        }
+    }
+
+    /**
+     * 并行构造时一个已展开的状态, targets 为后继的临时编号
+     */
+    private record Expanded(ItemKernel kernel, Expansion expansion, int[] targets) {
+    }
+
+    private void addState(Expansion expansion, int[] targets) {
+        closures.add(expansion.closure());
+        closureLookaheads.add(expansion.lookaheads());
+        transitionSymbols.add(expansion.symbols());
+        transitionTargets.add(targets);
+    }
+
+    /**
+     * 求核心的闭包及其各个后继核心, 核心带有向前看符号时求 LR(1) 闭包
+     */
+    private Expansion expand(ItemKernel kernel, Workspace workspace) {
+        final var stamp = ++workspace.stamp;
+        if (kernel.lookaheads() == null) {
+            final var closure = closureLR0(kernel.items(), workspace, stamp);
+            return successors(closure, null, workspace);
+        }
+        final var lookaheads = new ArrayList<long[]>();
+        final var closure = closureLR1(kernel, workspace, stamp, lookaheads);
+        return successors(closure, lookaheads.toArray(new long[0][]), workspace);
+    }
+
+    /**
+     * LR(0) 闭包: 核心项目加上核心项目点后各非终结符预先算好的闭包
+     */
+    private int[] closureLR0(int[] kernel, Workspace workspace, int stamp) {
+        final var t = terminals.length;
+        final var itemMark = workspace.itemMark;
+        final var nonTerminalMark = workspace.nonTerminalMark;
+        var items = Arrays.copyOf(kernel, kernel.length + 16);
+        var size = kernel.length;
+        for (final var item : kernel) {
+            itemMark[item] = stamp;
+        }
+
+        for (final var item : kernel) {
+            final var symbol = itemNext[item];
+            if (symbol < t || nonTerminalMark[symbol - t] == stamp) {
+                continue;
+            }
+            nonTerminalMark[symbol - t] = stamp;
+            for (final var expanded : nonTerminalClosures[symbol - t]) {
+                if (itemMark[expanded] != stamp) {
+                    itemMark[expanded] = stamp;
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, size * 2);
+                    }
+                    items[size++] = expanded;
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            workspace.itemPosition[items[i]] = i;
+        }
+        return Arrays.copyOf(items, size);
+    }
+
+    private int[] closureLR1(ItemKernel kernel, Workspace workspace, int stamp, List<long[]> lookaheads) {
+        final var t = terminals.length;
+        final var itemMark = workspace.itemMark;
+        final var itemPosition = workspace.itemPosition;
+        var items = new int[Math.max(16, kernel.items().length * 2)];
+        var size = 0;
+        for (int i = 0; i < kernel.items().length; i++) {
+            final var item = kernel.items()[i];
+            itemMark[item] = stamp;
+            itemPosition[item] = size;
+            items[size++] = item;
+            lookaheads.add(Arrays.copyOfRange(kernel.lookaheads(), i * words, (i + 1) * words));
+        }
+
+        // 向前看符号集合变大的项目需要重新展开, 直到不动点
+        var worklist = new int[items.length];
+        var queued = new boolean[items.length];
+        var top = 0;
+        for (int i = 0; i < size; i++) {
+            worklist[top++] = i;
+            queued[i] = true;
+        }
+        while (top > 0) {
+            final var position = worklist[--top];
+            queued[position] = false;
+            final var item = items[position];
+            final var symbol = itemNext[item];
+            if (symbol < t) {
+                continue;
+            }
+
+            final var inherited = suffixFirst[item + 1].clone();
+            if (suffixNullable[item + 1]) {
+                GrammarSets.or(inherited, lookaheads.get(position));
+            }
+            for (final var p : byHead[symbol - t]) {
+                final var next = itemBase[p];
+                final int target;
+                if (itemMark[next] != stamp) {
+                    itemMark[next] = stamp;
+                    itemPosition[next] = size;
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, size * 2);
+                        worklist = Arrays.copyOf(worklist, size * 2);
+                        queued = Arrays.copyOf(queued, size * 2);
+                    }
+                    items[size] = next;
+                    lookaheads.add(inherited.clone());
+                    target = size++;
+                } else {
+                    target = itemPosition[next];
+                    if (!GrammarSets.or(lookaheads.get(target), inherited)) {
+                        continue;
+                    }
+                }
+                if (!queued[target]) {
+                    queued[target] = true;
+                    worklist[top++] = target;
+                }
+            }
+        }
+        return Arrays.copyOf(items, size);
+    }
+
+    /**
+     * 按点后面的符号对闭包中的项目分组, 每组的后继项目即为一个转移目标的核心
+     * <br>
+     * 调用前 workspace.itemPosition 中须记有闭包中各项目的位置
+     */
+    private Expansion successors(int[] closure, long[][] lookaheads, Workspace workspace) {
+        // 高 32 位为符号, 低 32 位为项目编号, 排序后同一符号的项目相邻且按项目编号升序
+        final var keys = new long[closure.length];
+        var count = 0;
+        for (final var item : closure) {
+            final var symbol = itemNext[item];
+            if (symbol >= 0) {
+                keys[count++] = (long) symbol << 32 | item;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        final var symbols = new int[count];
+        final var successors = new ItemKernel[count];
+        var transitions = 0;
+        for (int begin = 0; begin < count; ) {
+            final var symbol = (int) (keys[begin] >>> 32);
+            var end = begin;
+            while (end < count && (int) (keys[end] >>> 32) == symbol) {
+                end++;
+            }
+
+            final var items = new int[end - begin];
+            final var kernelLookaheads = lookaheads == null ? null : new long[items.length * words];
+            for (int i = 0; i < items.length; i++) {
+                final var item = (int) keys[begin + i];
+                items[i] = item + 1;
+                if (lookaheads != null) {
+                    System.arraycopy(lookaheads[workspace.itemPosition[item]], 0, kernelLookaheads, i * words, words);
+                }
+            }
+
+            symbols[transitions] = symbol;
+            successors[transitions] = new ItemKernel(items, kernelLookaheads);
+            transitions++;
+            begin = end;
+        }
+        return new Expansion(closure, lookaheads,
+            Arrays.copyOf(symbols, transitions), Arrays.copyOf(successors, transitions));
+    }
+
+    private int transition(int state, int symbol) {
+        final var position = Arrays.binarySearch(transitionSymbols.get(state), symbol);
+        return position < 0 ? -1 : transitionTargets.get(state)[position];
+    }
+
+    //==================== DeRemer–Pennello ==============================//
+
+    private void computeLALRLookaheads() {
+        final var t = terminals.length;
+        final var states = kernels.size();
+
+        // 为所有非终结符转移编号
+        final var transitionIds = new int[states][];
+        final var fromState = new ArrayList<Integer>();
+        final var viaSymbol = new ArrayList<Integer>();
+        for (int state = 0; state < states; state++) {
+            final var symbols = transitionSymbols.get(state);
+            transitionIds[state] = new int[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                if (symbols[i] >= t) {
+                    transitionIds[state][i] = fromState.size();
+                    fromState.add(state);
+                    viaSymbol.add(symbols[i]);
+                } else {
+                    transitionIds[state][i] = -1;
+                }
+            }
+        }
+        final var count = fromState.size();
+        final var acceptItem = itemBase[0] + bodies[0].length;
+
+        // DR 与 reads
+        final var directRead = new long[count][];
+        final var reads = new GrammarSets.IntLists(count);
+        for (int x = 0; x < count; x++) {
+            final var target = transition(fromState.get(x), viaSymbol.get(x));
+            directRead[x] = new long[words];
+            final var symbols = transitionSymbols.get(target);
+            for (int i = 0; i < symbols.length; i++) {
+                if (symbols[i] < t) {
+                    GrammarSets.setBit(directRead[x], symbols[i]);
+                } else if (sets.isNullable(symbols[i] - t)) {
+                    reads.add(x, transitionIds[target][i]);
+                }
+            }
+            // 增广产生式 S' -> S . 之后只能是 EOF
+            if (Arrays.binarySearch(kernels.get(target).items(), acceptItem) >= 0) {
+                GrammarSets.setBit(directRead[x], eof);
+            }
+        }
+        final var read = digraph(reads.toArrays(), directRead);
+
+        // includes 与 lookback: 从 (p', B) 出发沿 B 的每条产生式体前进
+        final var includes = new GrammarSets.IntLists(count);
+        final var lookback = new HashMap<Long, List<Integer>>();
+        for (int x = 0; x < count; x++) {
+            for (final var p : byHead[viaSymbol.get(x) - t]) {
+                var state = (int) fromState.get(x);
+                final var body = bodies[p];
+                for (int i = 0; i < body.length; i++) {
+                    if (body[i] >= t && suffixNullable[itemBase[p] + i + 1]) {
+                        final var position = Arrays.binarySearch(transitionSymbols.get(state), body[i]);
+                        includes.add(transitionIds[state][position], x);
+                    }
+                    state = transition(state, body[i]);
+                }
+                lookback.computeIfAbsent((long) state << 32 | p, key -> new ArrayList<>()).add(x);
+            }
+        }
+        final var follow = digraph(includes.toArrays(), read);
+
+        for (int state = 0; state < states; state++) {
+            final var closure = closures.get(state);
+            final var lookaheads = new long[closure.length][];
+            for (int i = 0; i < closure.length; i++) {
+                if (itemNext[closure[i]] >= 0) {
+                    continue;
+                }
+                final var p = itemProduction[closure[i]];
+                lookaheads[i] = new long[words];
+                for (final var x : lookback.getOrDefault((long) state << 32 | p, List.of())) {
+                    GrammarSets.or(lookaheads[i], follow[x]);
+                }
+                if (p == 0) {
+                    GrammarSets.setBit(lookaheads[i], eof);
+                }
+            }
+            closureLookaheads.set(state, lookaheads);
+        }
+    }
+
+    /**
+     * DeRemer 与 Pennello 的 digraph 算法: 求 F(x) = base(x) ∪ ⋃{F(y) | x R y}
+     * <br>
+     * 基于 Tarjan 强连通分量算法, 同一强连通分量中的结点共享同一个结果. 用显式栈代替递归, 以免关系链过长时栈溢出
+     *
+     * @param edges 关系 R 的邻接表
+     * @param base  各结点的初值
+     * @return 各结点的结果
+     */
+    private long[][] digraph(int[][] edges, long[][] base) {
+        final var n = edges.length;
+        final var result = new long[n][];
+        for (int x = 0; x < n; x++) {
+            result[x] = base[x].clone();
+        }
+
+        final var depth = new int[n];
+        final var ownDepth = new int[n];
+        final var stack = new int[n];
+        final var frames = new int[n];
+        final var nextEdge = new int[n];
+        var top = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (depth[start] != 0) {
+                continue;
+            }
+            var frame = 0;
+            stack[top++] = start;
+            depth[start] = ownDepth[start] = top;
+            frames[frame] = start;
+            nextEdge[frame++] = 0;
+
+            while (frame > 0) {
+                final var x = frames[frame - 1];
+                if (nextEdge[frame - 1] < edges[x].length) {
+                    final var y = edges[x][nextEdge[frame - 1]++];
+                    if (depth[y] == 0) {
+                        stack[top++] = y;
+                        depth[y] = ownDepth[y] = top;
+                        frames[frame] = y;
+                        nextEdge[frame++] = 0;
+                    } else {
+                        depth[x] = Math.min(depth[x], depth[y]);
+                        GrammarSets.or(result[x], result[y]);
+                    }
+                    continue;
+                }
+
+                frame--;
+                if (depth[x] == ownDepth[x]) {
+                    int member;
+                    do {
+                        member = stack[--top];
+                        depth[member] = Integer.MAX_VALUE;
+                        result[member] = result[x];
+                    } while (member != x);
+                }
+                if (frame > 0) {
+                    final var parent = frames[frame - 1];
+                    depth[parent] = Math.min(depth[parent], depth[x]);
+                    GrammarSets.or(result[parent], result[x]);
+                }
+            }
+        }
+        return result;
+    }
+
+    //==================== 填表 ==============================//
+
+    private List<Status> fillTable() {
+        final var t = terminals.length;
+        final var statuses = new ArrayList<Status>(kernels.size());
+        final var shifts = new Action[kernels.size()];
+        for (int state = 0; state < kernels.size(); state++) {
+            final var status = Status.create(state);
+            statuses.add(status);
+            shifts[state] = Action.shift(status);
+        }
+        final var reduces = Arrays.stream(productions).map(Action::reduce).toArray(Action[]::new);
+
+        for (int state = 0; state < kernels.size(); state++) {
+            final var status = statuses.get(state);
+            final var symbols = transitionSymbols.get(state);
+            final var targets = transitionTargets.get(state);
+            for (int i = 0; i < symbols.length; i++) {
+                if (symbols[i] < t) {
+                    status.setAction(terminals[symbols[i]], shifts[targets[i]]);
+                } else {
+                    status.setGoto(nonTerminals[symbols[i] - t], statuses.get(targets[i]));
+                }
+            }
+
+            final var closure = closures.get(state);
+            final var lookaheads = closureLookaheads.get(state);
+            for (int i = 0; i < closure.length; i++) {
+                if (itemNext[closure[i]] >= 0) {
+                    continue;
+                }
+                final var p = itemProduction[closure[i]];
+                if (p == 0) {
+                    status.setAction(TokenKind.eof(), Action.accept());
+                    continue;
+                }
+                final var set = lookaheads[i];
+                for (int w = 0; w < words; w++) {
+                    for (var bits = set[w]; bits != 0; bits &= bits - 1) {
+                        status.setAction(terminals[(w << 6) + Long.numberOfTrailingZeros(bits)], reduces[p]);
+                    }
+                }
+            }
+        }
+        return statuses;
+    }
+
+    //==================== 工具 ==============================//
+
+    private String itemToString(int item) {
+        final var production = productions[itemProduction[item]];
+        final var dot = item - itemBase[itemProduction[item]];
+        final var builder = new StringBuilder().append(production.head()).append(" -> ");
+        final var body = production.body();
+        for (int i = 0; i < body.size(); i++) {
+            if (i == dot) {
+                builder.append(" .");
+            }
+            builder.append(" ").append(body.get(i));
+        }
+        if (dot == body.size()) {
+            builder.append(" .");
+        }
+        return builder.toString();
+    }
+
+    private String setToString(long[] set) {
+        final var names = new ArrayList<String>();
+        for (int t = 0; t < terminals.length; t++) {
+            if ((set[t >>> 6] & 1L << t) != 0) {
+                names.add(terminals[t].getIdentifier());
+            }
+        }
+        return String.join("/", names);
+    }
+}
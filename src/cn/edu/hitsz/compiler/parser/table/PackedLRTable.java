@@ -0,0 +1,378 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 以行位移 (comb vector) 方式压缩的 LR 分析表
+ * <br>
+ * 与 yacc/bison 的做法相同:
+ * <ul>
+ *     <li>每个状态取出现最多的规约动作作为默认规约, ACTION 行中与默认动作相同的项以及错误项都不再存储.
+ *     查不到的项一律执行默认动作, 因此错误可能在若干次规约之后才被发现, 但不会多移入任何词法单元</li>
+ *     <li>每个非终结符取出现最多的目标状态作为默认转移, GOTO 列中只存储与默认转移不同的项.
+ *     合法的分析过程不会查询 GOTO 表中的错误项, 故错误项同样可以省略</li>
+ *     <li>剩下的稀疏行 (GOTO 为稀疏列) 按非空项数从多到少依次 "插入" 一个共用的一维数组: 为每行找一个位移 base,
+ *     使该行的所有非空项落在数组的空位上. 另有一个 check 数组记录每个位置属于哪一行, 查找时以此判断是否命中</li>
+ * </ul>
+ * 查找 ACTION[s, t]: 若 check[base[s] + t] == s 则为 table[base[s] + t], 否则为 s 的默认动作.
+ * 动作的编码与 {@link CompiledLRTable} 相同.
+ */
+public final class PackedLRTable {
+    /**
+     * 压缩 LR 分析表
+     *
+     * @param table LR 分析表
+     * @return 压缩后的分析表
+     */
+    public static PackedLRTable pack(LRTable table) {
+        return new PackedLRTable(table, CompiledLRTable.compile(table));
+    }
+
+    /**
+     * 与 {@link LRTable#getAction(Status, Token)} 等价的查找
+     * <br>
+     * 原表中的错误项在此可能返回该状态的默认规约
+     *
+     * @param status 当前状态
+     * @param token  当前词法单元
+     * @return 应采取的动作
+     */
+    public Action getAction(Status status, Token token) {
+        final var action = action(status.index(), token.getKind().getCode());
+        final var operand = CompiledLRTable.operandOf(action);
+        return switch (CompiledLRTable.kindOf(action)) {
+            case CompiledLRTable.SHIFT -> shiftActions[operand];
+            case CompiledLRTable.REDUCE -> reduceActions[operand];
+            case CompiledLRTable.ACCEPT -> Action.accept();
+            default -> Action.error();
+        };
+    }
+
+    /**
+     * 与 {@link LRTable#getGoto(Status, NonTerminal)} 等价的查找
+     * <br>
+     * 原表中的错误项在此可能返回该非终结符的默认转移
+     *
+     * @param status      当前状态
+     * @param nonTerminal 规约出的非终结符
+     * @return 应转移到的状态
+     */
+    public Status getGoto(Status status, NonTerminal nonTerminal) {
+        final var ordinal = ordinals.get(nonTerminal);
+        if (ordinal == null) {
+            return Status.error();
+        }
+        final var target = gotoState(status.index(), ordinal);
+        return target < 0 ? Status.error() : statuses[target];
+    }
+
+    /**
+     * @param state        状态编号
+     * @param terminalCode 终结符码点, EOF 为 -1
+     * @return 编码后的动作
+     */
+    public int action(int state, int terminalCode) {
+        final var column = terminalCode + 1;
+        if (column >= 0 && column < terminalColumns) {
+            final var slot = actionBase[state] + column;
+            if (actionCheck[slot] == state) {
+                return actionTable[slot];
+            }
+        }
+        return defaultActions[state];
+    }
+
+    /**
+     * @param state              状态编号
+     * @param nonTerminalOrdinal 非终结符序号
+     * @return 转移到的状态编号, 出错时为 -1
+     */
+    public int gotoState(int state, int nonTerminalOrdinal) {
+        final var slot = gotoBase[nonTerminalOrdinal] + state;
+        if (gotoCheck[slot] == nonTerminalOrdinal) {
+            return gotoTable[slot];
+        }
+        return defaultGotos[nonTerminalOrdinal];
+    }
+
+    /**
+     * 估算该对象持有的全部数据所占的字节数: 压缩后的各 int 数组, 状态与动作的引用数组, 预先构造的 Action 对象,
+     * 以及非终结符序号的 HashMap. Status 对象本身与 LRTable 共享, 不计入. 数组另计 16 字节的对象头, 其余估算方法同
+     * {@link #hashMapFootprintBytes()}. 构造时用到的稠密矩阵不被该对象持有, 构造完成后即可回收
+     *
+     * @return 估算的字节数
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        for (final var array : List.of(actionBase, actionTable, actionCheck, defaultActions,
+            gotoBase, gotoTable, gotoCheck, defaultGotos)) {
+            bytes += 16 + 4L * array.length;
+        }
+        for (final var array : List.of(statuses, shiftActions, reduceActions)) {
+            bytes += 16 + 4L * array.length;
+        }
+        bytes += 24L * (Arrays.stream(shiftActions).filter(Objects::nonNull).count()
+            + Arrays.stream(reduceActions).filter(Objects::nonNull).count());
+        return bytes + hashMapBytes(ordinals.size());
+    }
+
+    /**
+     * 估算原先以每个 Status 中的两个 HashMap 存储分析表所占的字节数
+     * <br>
+     * 按 64 位 JVM 开启压缩指针估算: HashMap 对象 48 字节, 桶数组 16 + 4 × 容量字节, 每个节点 32 字节, 每个 Action 对象 24 字节
+     *
+     * @return 估算的字节数
+     */
+    public long hashMapFootprintBytes() {
+        long bytes = 0;
+        for (final var status : statuses) {
+            if (status != null) {
+                bytes += hashMapBytes(status.action().size()) + 24L * status.action().size();
+                bytes += hashMapBytes(status.goto_().size());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 三种表示所占空间的对比
+     */
+    public String footprintReport() {
+        return """
+            states: %d, terminal columns: %d, non-terminals: %d
+            per-Status HashMaps (estimated): %d bytes
+            dense int matrices:              %d bytes
+            packed table (whole object):     %d bytes (action entries %d, goto entries %d)
+            """.formatted(statuses.length, terminalColumns, defaultGotos.length,
+            hashMapFootprintBytes(), denseFootprintBytes, footprintBytes(), actionEntries, gotoEntries);
+    }
+
+    private final Status[] statuses;
+    // 稠密矩阵的大小, 仅用于对比
+    private final long denseFootprintBytes;
+    private final int terminalColumns;
+    private final Map<NonTerminal, Integer> ordinals = new HashMap<>();
+    private final Action[] shiftActions;
+    private final Action[] reduceActions;
+
+    private final int[] defaultActions;
+    private final int[] actionBase;
+    private final int[] actionTable;
+    private final int[] actionCheck;
+    private final int actionEntries;
+
+    private final int[] defaultGotos;
+    private final int[] gotoBase;
+    private final int[] gotoTable;
+    private final int[] gotoCheck;
+    private final int gotoEntries;
+
+    private PackedLRTable(LRTable table, CompiledLRTable dense) {
+        this.terminalColumns = dense.terminalColumns();
+        this.denseFootprintBytes = dense.footprintBytes();
+        final var states = dense.stateCount();
+        this.statuses = new Status[states];
+        for (int state = 0; state < states; state++) {
+            statuses[state] = dense.status(state);
+        }
+        final var nonTerminals = table.getNonTerminals();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            ordinals.put(nonTerminals.get(i), i);
+        }
+
+        this.shiftActions = new Action[states];
+        for (int state = 0; state < states; state++) {
+            if (statuses[state] != null) {
+                shiftActions[state] = Action.shift(statuses[state]);
+            }
+        }
+        this.reduceActions = new Action[dense.productionCount()];
+        for (int production = 0; production < reduceActions.length; production++) {
+            if (dense.production(production) != null) {
+                reduceActions[production] = Action.reduce(dense.production(production));
+            }
+        }
+
+        // ACTION: 每行去掉默认规约与错误项
+        this.defaultActions = new int[states];
+        final var actionRows = new ArrayList<int[][]>(states);
+        for (int state = 0; state < states; state++) {
+            final var row = new int[terminalColumns];
+            for (int column = 0; column < terminalColumns; column++) {
+                row[column] = dense.action(state, column - 1);
+            }
+            defaultActions[state] = mostFrequentReduce(row);
+            actionRows.add(sparse(row, defaultActions[state], CompiledLRTable.ERROR));
+        }
+        final var packedActions = new CombVector(actionRows);
+        this.actionBase = packedActions.base;
+        this.actionTable = packedActions.table(terminalColumns);
+        this.actionCheck = packedActions.check(terminalColumns);
+        this.actionEntries = packedActions.entries;
+
+        // GOTO: 按列 (非终结符) 压缩, 每列去掉默认转移与错误项
+        final var columns = dense.nonTerminalCount();
+        this.defaultGotos = new int[columns];
+        final var gotoColumns = new ArrayList<int[][]>(columns);
+        for (int k = 0; k < columns; k++) {
+            final var column = new int[states];
+            for (int state = 0; state < states; state++) {
+                column[state] = dense.gotoState(state, k);
+            }
+            defaultGotos[k] = mostFrequent(column, -1);
+            gotoColumns.add(sparse(column, defaultGotos[k], -1));
+        }
+        final var packedGotos = new CombVector(gotoColumns);
+        this.gotoBase = packedGotos.base;
+        this.gotoTable = packedGotos.table(states);
+        this.gotoCheck = packedGotos.check(states);
+        this.gotoEntries = packedGotos.entries;
+    }
+
+    private static long hashMapBytes(int size) {
+        if (size == 0) {
+            return 48;
+        }
+        // 默认负载因子 0.75, 容量为 2 的幂, 至少 16
+        final var capacity = Math.max(16, Integer.highestOneBit((int) Math.ceil(size / 0.75) - 1) << 1);
+        return 48 + 16 + 4L * capacity + 32L * size;
+    }
+
+    /**
+     * @return 一行中出现最多的规约动作, 没有规约动作时为 ERROR
+     */
+    private static int mostFrequentReduce(int[] row) {
+        final var reduces = Arrays.stream(row)
+            .filter(action -> CompiledLRTable.kindOf(action) == CompiledLRTable.REDUCE)
+            .toArray();
+        return mostFrequent(reduces, CompiledLRTable.ERROR);
+    }
+
+    /**
+     * @return 数组中除 ignored 外出现最多的值, 并列时取较小者; 全为 ignored 时返回 ignored
+     */
+    private static int mostFrequent(int[] values, int ignored) {
+        final var counts = new HashMap<Integer, Integer>();
+        for (final var value : values) {
+            if (value != ignored) {
+                counts.merge(value, 1, Integer::sum);
+            }
+        }
+        return counts.entrySet().stream()
+            .max(Comparator.<Map.Entry<Integer, Integer>>comparingInt(Map.Entry::getValue)
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+            .map(Map.Entry::getKey)
+            .orElse(ignored);
+    }
+
+    /**
+     * @return 行中既不等于默认值也不为错误的项, 形如 {列号数组, 值数组}
+     */
+    private static int[][] sparse(int[] row, int defaultValue, int error) {
+        final var columns = new ArrayList<Integer>();
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] != defaultValue && row[i] != error) {
+                columns.add(i);
+            }
+        }
+        final var indices = columns.stream().mapToInt(Integer::intValue).toArray();
+        final var values = Arrays.stream(indices).map(i -> row[i]).toArray();
+        return new int[][]{indices, values};
+    }
+
+    /**
+     * 把若干稀疏行插入同一个一维数组
+     */
+    private static final class CombVector {
+        private final int[] base;
+        private final int entries;
+        private int[] table = new int[64];
+        private int[] check = new int[64];
+        private int used = 0;
+
+        private CombVector(List<int[][]> rows) {
+            this.base = new int[rows.size()];
+            Arrays.fill(check, -1);
+
+            final var order = new ArrayList<Integer>();
+            for (int i = 0; i < rows.size(); i++) {
+                order.add(i);
+            }
+            // 非空项多的行先放, 空行不占位置
+            order.sort(Comparator.comparingInt((Integer row) -> rows.get(row)[0].length).reversed());
+
+            final var occupied = new BitSet();
+            var total = 0;
+            for (final var row : order) {
+                final var columns = rows.get(row)[0];
+                final var values = rows.get(row)[1];
+                if (columns.length == 0) {
+                    continue;
+                }
+
+                // 位移不取负数, 这样任意列加上位移都不会越过数组开头
+                var candidate = 0;
+                while (!fits(occupied, candidate, columns)) {
+                    candidate++;
+                }
+                base[row] = candidate;
+                for (int i = 0; i < columns.length; i++) {
+                    final var slot = candidate + columns[i];
+                    occupied.set(slot);
+                    ensure(slot + 1);
+                    table[slot] = values[i];
+                    check[slot] = row;
+                }
+                total += columns.length;
+            }
+            this.entries = total;
+        }
+
+        private static boolean fits(BitSet occupied, int candidate, int[] columns) {
+            for (final var column : columns) {
+                if (occupied.get(candidate + column)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void ensure(int size) {
+            if (size > table.length) {
+                final var capacity = Math.max(size, table.length * 2);
+                table = Arrays.copyOf(table, capacity);
+                final var oldLength = check.length;
+                check = Arrays.copyOf(check, capacity);
+                Arrays.fill(check, oldLength, capacity, -1);
+            }
+            used = Math.max(used, size);
+        }
+
+        /**
+         * @param width 每行的宽度; 数组末尾补足到任意行的任意列都不会越界
+         */
+        private int[] table(int width) {
+            return Arrays.copyOf(table, paddedLength(width));
+        }
+
+        private int[] check(int width) {
+            final var padded = Arrays.copyOf(check, paddedLength(width));
+            Arrays.fill(padded, Math.min(used, check.length), padded.length, -1);
+            return padded;
+        }
+
+        private int paddedLength(int width) {
+            final var maxBase = Arrays.stream(base).max().orElse(0);
+            return Math.max(used, maxBase + width);
+        }
+    }
+}
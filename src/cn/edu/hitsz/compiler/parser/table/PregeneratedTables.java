@@ -0,0 +1,61 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 预先生成的分析表类提供的数据, 见 {@link TableClassGenerator}
+ * <br>
+ * 终结符均以码点表示. 产生式体中的终结符编码为 -1 - 码点, 非终结符编码为其在 {@link #nonTerminals()} 中的下标.
+ * 返回的数组即生成类中的静态常量, 调用者不能修改.
+ */
+interface PregeneratedTables {
+    /**
+     * @return 码点文件中的标识符 (不含 EOF)
+     */
+    String[] tokenIds();
+
+    /**
+     * @return 与 {@link #tokenIds()} 一一对应的码点
+     */
+    int[] tokenCodes();
+
+    /**
+     * @return 所有非终结符的名字, 前 {@link #gotoColumns()} 个依次为 GOTO 表的各列
+     */
+    String[] nonTerminals();
+
+    int gotoColumns();
+
+    /**
+     * @return 按行号排列的各产生式的编号
+     */
+    int[] productionIndices();
+
+    /**
+     * @return 各产生式头部的非终结符下标
+     */
+    int[] productionHeads();
+
+    /**
+     * @return 各产生式体的编码
+     */
+    int[][] productionBodies();
+
+    /**
+     * @return ACTION 表各列的终结符码点
+     */
+    int[] terminalCodes();
+
+    /**
+     * @return 按分析表中的顺序排列的状态编号
+     */
+    int[] stateIndices();
+
+    /**
+     * @return ACTION 表, 行优先, 编码同 {@link CompiledLRTable}
+     */
+    int[] actions();
+
+    /**
+     * @return GOTO 表, 行优先, 出错为 -1
+     */
+    int[] gotos();
+}
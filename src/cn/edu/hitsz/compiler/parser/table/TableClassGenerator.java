@@ -0,0 +1,230 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.CompilerOptions;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 把码点表, 语法与 LR 分析表预先生成为 Java 源码
+ * <br>
+ * 即使使用 {@link LRTableCache}, 每次启动仍要读取码点文件与语法文件并重建分析表. 该类在构建时运行一次,
+ * 生成实现了 {@link PregeneratedTables} 的类 {@value #CLASS_NAME}: 码点, 产生式与 ACTION/GOTO 表都写成 static final 数组.
+ * 把编译后的生成类放在 classpath 上, 并以 {@code -Dcompiler.parser.aot=true} 运行时, {@link #loadGenerated()} 直接由这些数组
+ * 设置 {@link TokenKind} 与 {@link GrammarInfo} 并重建 LRTable, 词法分析开始前不再读取任何文件.
+ * <br>
+ * 需要在项目根目录下运行, 默认生成到 gen 目录, 再与项目的类一同编译:
+ * <pre>
+ *     java -cp out cn.edu.hitsz.compiler.parser.table.TableClassGenerator [outputDir]
+ *     javac -cp out -d out gen/cn/edu/hitsz/compiler/parser/table/GeneratedLRTable.java
+ * </pre>
+ * 指定了 {@code -Dcompiler.parser.generator} 时由语法文件构造分析表, 否则读取 CSV 分析表.
+ * 生成类不记录输入的摘要, 输入文件改变后需要重新生成.
+ * <br>
+ * 数组以字面量写在静态初始化方法中, 单个方法的字节码不能超过 64KB, 故只适用于本实验规模的分析表.
+ */
+public final class TableClassGenerator {
+    private static final String PACKAGE = TableClassGenerator.class.getPackageName();
+    static final String CLASS_NAME = "GeneratedLRTable";
+
+    public static void main(String[] args) throws IOException {
+        final var root = args.length > 0 ? args[0] : "gen";
+
+        TokenKind.loadTokenKinds();
+        final LRTable table;
+        if (CompilerOptions.TABLE_GENERATOR != null) {
+            final var generator = new TableGenerator(TableGenerator.Mode.valueOf(CompilerOptions.TABLE_GENERATOR.toUpperCase()));
+            generator.build();
+            table = generator.getTable();
+        } else {
+            table = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        }
+
+        final var path = Path.of(root, PACKAGE.replace('.', '/'), CLASS_NAME + ".java");
+        Files.createDirectories(path.getParent());
+        FileUtils.writeFile(path.toString(), generateSource(table));
+        System.out.println("Generated " + path);
+    }
+
+    /**
+     * 载入预先生成的分析表类, 以其中的数据设置 {@link TokenKind} 与 {@link GrammarInfo}, 并重建分析表
+     * <br>
+     * 须在 {@link TokenKind#loadTokenKinds()} 与任何读取 GrammarInfo 的操作之前调用
+     *
+     * @return 分析表; 生成类不在 classpath 上时为 null, 此时不做任何设置
+     */
+    public static LRTable loadGenerated() {
+        final PregeneratedTables tables;
+        try {
+            tables = (PregeneratedTables) Class.forName(PACKAGE + "." + CLASS_NAME).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to load generated LR table", e);
+        }
+
+        TokenKind.loadTokenKinds(tables.tokenIds(), tables.tokenCodes());
+
+        final var nonTerminals = Arrays.stream(tables.nonTerminals()).map(NonTerminal::new).toList();
+        final var indices = tables.productionIndices();
+        final var heads = tables.productionHeads();
+        final var bodies = tables.productionBodies();
+        final var productions = new ArrayList<Production>(indices.length);
+        for (int p = 0; p < indices.length; p++) {
+            final var body = new ArrayList<Term>(bodies[p].length);
+            for (final var symbol : bodies[p]) {
+                body.add(symbol < 0 ? TokenKind.fromCode(-1 - symbol) : nonTerminals.get(symbol));
+            }
+            productions.add(new Production(indices[p], nonTerminals.get(heads[p]), body));
+        }
+        GrammarInfo.load(productions);
+
+        final var terminals = Arrays.stream(tables.terminalCodes()).mapToObj(TokenKind::fromCode).toList();
+        return LRTableCache.assemble(terminals, nonTerminals.subList(0, tables.gotoColumns()),
+            tables.stateIndices(), tables.actions(), tables.gotos());
+    }
+
+    /**
+     * 生成分析表类的源码, 保证在 {@link TokenKind#loadTokenKinds()} 之后调用
+     *
+     * @param table LR 分析表
+     * @return Java 源码
+     */
+    public static String generateSource(LRTable table) {
+        final var tokenKinds = TokenKind.allAllowedTokenKinds().values().stream()
+            .filter(kind -> !kind.equals(TokenKind.eof()))
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+
+        // GOTO 表的列在前, 只在产生式中出现的非终结符 (如增广文法的头部) 在后
+        final var nonTerminals = new LinkedHashMap<NonTerminal, Integer>();
+        table.getNonTerminals().forEach(nonTerminal -> nonTerminals.putIfAbsent(nonTerminal, nonTerminals.size()));
+        final var productions = GrammarInfo.getProductionsInOrder();
+        for (final var production : productions) {
+            nonTerminals.putIfAbsent(production.head(), nonTerminals.size());
+            for (final var term : production.body()) {
+                if (term instanceof NonTerminal nonTerminal) {
+                    nonTerminals.putIfAbsent(nonTerminal, nonTerminals.size());
+                }
+            }
+        }
+
+        final var bodies = new int[productions.size()][];
+        for (int p = 0; p < productions.size(); p++) {
+            final var body = productions.get(p).body();
+            bodies[p] = new int[body.size()];
+            for (int i = 0; i < body.size(); i++) {
+                bodies[p][i] = body.get(i) instanceof TokenKind kind ? -1 - kind.getCode() : nonTerminals.get((NonTerminal) body.get(i));
+            }
+        }
+
+        final var terminals = table.getTerminals();
+        final var statuses = table.getStatusInIndexOrder();
+        final var actions = new int[statuses.size() * terminals.size()];
+        final var gotos = new int[statuses.size() * table.getNonTerminals().size()];
+        var actionCell = 0;
+        var gotoCell = 0;
+        for (final var status : statuses) {
+            for (final var terminal : terminals) {
+                actions[actionCell++] = CompiledLRTable.encode(status.getAction(terminal));
+            }
+            for (final var nonTerminal : table.getNonTerminals()) {
+                final var target = status.getGoto(nonTerminal);
+                gotos[gotoCell++] = target.isError() ? -1 : target.index();
+            }
+        }
+
+        final var constants = List.of(
+            new Constant("tokenIds", "String[]", stringArray(tokenKinds.stream().map(TokenKind::getIdentifier).toList())),
+            new Constant("tokenCodes", "int[]", intArray(tokenKinds.stream().mapToInt(TokenKind::getCode).toArray())),
+            new Constant("nonTerminals", "String[]", stringArray(nonTerminals.keySet().stream().map(Term::getTermName).toList())),
+            new Constant("gotoColumns", "int", String.valueOf(table.getNonTerminals().size())),
+            new Constant("productionIndices", "int[]", intArray(productions.stream().mapToInt(Production::index).toArray())),
+            new Constant("productionHeads", "int[]", intArray(productions.stream().mapToInt(p -> nonTerminals.get(p.head())).toArray())),
+            new Constant("productionBodies", "int[][]", nestedIntArray(bodies)),
+            new Constant("terminalCodes", "int[]", intArray(terminals.stream().mapToInt(TokenKind::getCode).toArray())),
+            new Constant("stateIndices", "int[]", intArray(statuses.stream().mapToInt(Status::index).toArray())),
+            new Constant("actions", "int[]", intArray(actions)),
+            new Constant("gotos", "int[]", intArray(gotos)));
+
+        final var code = new StringBuilder();
+        code.append("package ").append(PACKAGE).append(";\n\n");
+        code.append("/**\n");
+        code.append(" * 由 ").append(TableClassGenerator.class.getSimpleName())
+            .append(" 根据码点文件, 语法文件与 LR 分析表生成, 不要手动修改\n");
+        code.append(" */\n");
+        code.append("final class ").append(CLASS_NAME).append(" implements ")
+            .append(PregeneratedTables.class.getSimpleName()).append(" {\n");
+        for (final var constant : constants) {
+            code.append("    private static final ").append(constant.type()).append(" ").append(constant.fieldName())
+                .append(" = ").append(constant.literal()).append(";\n");
+        }
+        for (final var constant : constants) {
+            code.append("\n");
+            code.append("    @Override\n");
+            code.append("    public ").append(constant.type()).append(" ").append(constant.accessor()).append("() {\n");
+            code.append("        return ").append(constant.fieldName()).append(";\n");
+            code.append("    }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 生成类中的一个常量及其访问方法
+     *
+     * @param accessor {@link PregeneratedTables} 中的方法名
+     * @param type     类型
+     * @param literal  初始值的字面量
+     */
+    private record Constant(String accessor, String type, String literal) {
+        /**
+         * @return 常量名, 如 tokenIds 对应 TOKEN_IDS
+         */
+        String fieldName() {
+            return accessor.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+        }
+    }
+
+    private static String intArray(int[] values) {
+        final var builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(i % 20 == 0 ? ",\n        " : ", ");
+            }
+            builder.append(values[i]);
+        }
+        return builder.append("}").toString();
+    }
+
+    private static String nestedIntArray(int[][] values) {
+        final var builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            builder.append(i > 0 ? ",\n        " : "").append(intArray(values[i]));
+        }
+        return builder.append("}").toString();
+    }
+
+    private static String stringArray(List<String> values) {
+        final var builder = new StringBuilder("{");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                builder.append(i % 10 == 0 ? ",\n        " : ", ");
+            }
+            builder.append('"').append(values.get(i).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return builder.append("}").toString();
+    }
+
+    private TableClassGenerator() {
+    }
+}
@@ -0,0 +1,17 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * LR 自动机中的一条转移边, 即 GO(I, X) = J
+ * <br>
+ * 终结符上的转移对应 ACTION 表中的 shift, 非终结符上的转移对应 GOTO 表中的一项.
+ *
+ * @param source 源状态编号 I
+ * @param symbol 文法符号 X
+ * @param target 目标状态编号 J
+ */
+public record Transition(int source, Term symbol, int target) {
+    @Override
+    public String toString() {
+        return "%d -- %s --> %d".formatted(source, symbol, target);
+    }
+}
@@ -3,6 +3,8 @@ package cn.edu.hitsz.compiler.symtab;
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -11,10 +13,19 @@ import java.util.*;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 符号表同时也是标识符的驻留表: 每个条目在加入时获得一个从 0 开始的连续编号, 词法分析时通过 {@code intern} 直接用源缓冲区中的
+ * 下标区间查找标识符, 已存在的标识符不会再构造新的 String. 后续阶段持有编号即可通过 {@link #get(int)} 以数组下标取得条目.
+ * 条目被移除后其编号不会被复用, 其余条目的编号保持不变.
  */
 public class SymbolTable {
 
-    private static final Map<String, SymbolTableEntry> symbol_text = new HashMap<>();
+    private final Map<String, SymbolTableEntry> symbol_text = new HashMap<>();
+    // 按编号排列的条目
+    private final List<SymbolTableEntry> entriesById = new ArrayList<>();
+    // 开放定址的驻留哈希表, 槽中存放 "条目编号 + 1", 0 表示空槽. 哈希值与 String.hashCode 的算法一致
+    private int[] slots = new int[64];
+
     /**
      * 获取符号表中已有的条目
      *
@@ -43,12 +54,103 @@ public class SymbolTable {
             throw new RuntimeException("already added");
         }
         else {
-            SymbolTableEntry symbol = new SymbolTableEntry(text);
+            SymbolTableEntry symbol = new SymbolTableEntry(entriesById.size(), text);
             symbol_text.put(text,symbol);
+            entriesById.add(symbol);
+            insertSlot(text.hashCode(), symbol.getId());
             return symbol;
         }
     }
 
+    /**
+     * 从符号表中移除条目
+     *
+     * @param text 待移除符号的文本表示
+     * @return 被移除的条目
+     * @throws RuntimeException 该符号在表中不存在
+     */
+    public SymbolTableEntry remove(String text) {
+        final var symbol = get(text);
+        removeSlot(symbol.getId());
+        symbol_text.remove(text);
+        entriesById.set(symbol.getId(), null);
+        return symbol;
+    }
+
+    /**
+     * 按编号获取符号表中已有的条目
+     *
+     * @param id 条目编号
+     * @return 该编号对应的条目
+     * @throws RuntimeException 该编号在表中不存在
+     */
+    public SymbolTableEntry get(int id) {
+        if (!has(id)) {
+            throw new RuntimeException("not exist");
+        }
+        return entriesById.get(id);
+    }
+
+    /**
+     * @param id 条目编号
+     * @return 该编号的条目是否位于符号表中
+     */
+    public boolean has(int id) {
+        return id >= 0 && id < entriesById.size() && entriesById.get(id) != null;
+    }
+
+    /**
+     * 查找文本为 source[begin, end) 的符号, 若不存在则新增条目
+     *
+     * @param source 源文本
+     * @param begin  起始下标 (含)
+     * @param end    结束下标 (不含)
+     * @return 该符号的条目编号
+     */
+    public int intern(CharSequence source, int begin, int end) {
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        final var mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final var entry = entriesById.get(slots[slot] - 1);
+            if (entry.getText().hashCode() == hash && regionEquals(entry.getText(), source, begin, end)) {
+                return entry.getId();
+            }
+        }
+
+        return add(source.subSequence(begin, end).toString()).getId();
+    }
+
+    /**
+     * 查找文本为 source[begin, end) 中的 ASCII 字节的符号, 若不存在则新增条目
+     *
+     * @param source 源字节
+     * @param begin  起始下标 (含)
+     * @param end    结束下标 (不含)
+     * @return 该符号的条目编号
+     */
+    public int intern(ByteBuffer source, int begin, int end) {
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + (source.get(i) & 0xFF);
+        }
+
+        final var mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final var entry = entriesById.get(slots[slot] - 1);
+            if (entry.getText().hashCode() == hash && regionEquals(entry.getText(), source, begin, end)) {
+                return entry.getId();
+            }
+        }
+
+        final var bytes = new byte[end - begin];
+        source.get(begin, bytes, 0, bytes.length);
+        return add(new String(bytes, StandardCharsets.US_ASCII)).getId();
+    }
+
     /**
      * 判断符号表中有无条目
      *
@@ -59,6 +161,75 @@ public class SymbolTable {
         return symbol_text.containsKey(text);
     }
 
+    /**
+     * @return 已分配的条目编号数, 即下一个新条目的编号; 被移除的条目仍计入其中
+     */
+    public int size() {
+        return entriesById.size();
+    }
+
+    private void insertSlot(int hash, int id) {
+        // 装载因子不超过 1/2
+        if ((entriesById.size()) * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (final var entry : entriesById) {
+                if (entry != null && entry.getId() != id) {
+                    placeSlot(entry.getText().hashCode(), entry.getId());
+                }
+            }
+        }
+        placeSlot(hash, id);
+    }
+
+    private void placeSlot(int hash, int id) {
+        final var mask = slots.length - 1;
+        var slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private void removeSlot(int id) {
+        final var mask = slots.length - 1;
+        var slot = entriesById.get(id).getText().hashCode() & mask;
+        while (slots[slot] != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = 0;
+
+        // 线性探测表中不能留下空洞, 把同一簇中其后的条目重新放置
+        for (slot = (slot + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final var moved = slots[slot] - 1;
+            slots[slot] = 0;
+            placeSlot(entriesById.get(moved).getText().hashCode(), moved);
+        }
+    }
+
+    private static boolean regionEquals(String text, CharSequence source, int begin, int end) {
+        if (text.length() != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != source.charAt(begin + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(String text, ByteBuffer source, int begin, int end) {
+        if (text.length() != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != (source.get(begin + i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 获得符号表的所有条目以供 {@code dumpTable} 使用
      *
@@ -8,10 +8,26 @@ public class SymbolTableEntry {
      * @param text 符号的文本表示. 对于标识符符号, 该参数应该为标识符文本.
      */
     public SymbolTableEntry(String text) {
+        this(-1, text);
+    }
+
+    /**
+     * @param id   符号在符号表中的编号
+     * @param text 符号的文本表示
+     */
+    SymbolTableEntry(int id, String text) {
+        this.id = id;
         this.text = text;
         this.type = null;
     }
 
+    /**
+     * @return 符号在符号表中的编号, 同一符号表中的编号从 0 开始连续分配; 不属于任何符号表的条目为 -1
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * @return 符号的文本表示
      */
@@ -40,6 +56,7 @@ public class SymbolTableEntry {
         this.type = type;
     }
 
+    private final int id;
     private final String text;
     private SourceCodeType type;
 }
@@ -0,0 +1,124 @@
+package cn.edu.hitsz.compiler.utils;
+
+/**
+ * 程序中可选的运行模式
+ * <br>
+ * 所有选项都通过 JVM 系统属性 (形如 {@code -Dcompiler.lexer.streaming=true}) 指定, 不指定时保持默认的完整读入流程.
+ */
+public final class CompilerOptions {
+    //==================================== 词法分析 ========================================//
+    /**
+     * 流式词法分析: 语法分析驱动程序按需从源文件通道中拉取词法单元.
+     * <br>
+     * 此模式下词法单元不会在语法分析前全部生成, 故不输出 token.txt 与 old_symbol_table.txt
+     */
+    public static final boolean STREAMING_LEXER = Boolean.getBoolean("compiler.lexer.streaming");
+
+    /**
+     * 流式词法分析时读入窗口的大小 (字节)
+     */
+    public static final int STREAMING_WINDOW_SIZE = Integer.getInteger("compiler.lexer.window", 64 * 1024);
+
+    /**
+     * 内存映射词法分析: 源文件被映射到内存后直接按字节扫描, 不解码为 String
+     */
+    public static final boolean MAPPED_LEXER = Boolean.getBoolean("compiler.lexer.mapped");
+
+    /**
+     * 并行分块词法分析的块数, 为 1 时不分块
+     */
+    public static final int LEXER_CHUNKS = Integer.getInteger("compiler.lexer.chunks", 1);
+
+    /**
+     * 紧凑词法单元流: 词法分析结果以 TokenBuffer 的形式存储, 语法分析时按需读取
+     */
+    public static final boolean COMPACT_TOKENS = Boolean.getBoolean("compiler.lexer.compact");
+
+    /**
+     * 生成专用的词法扫描器: 把当前码点文件对应的自动机翻译为基于 switch 的 Java 类, 在内存中编译后作为隐藏类载入.
+     * <br>
+     * 运行时需要 JDK 的编译器, 不可用时回退到表驱动的自动机
+     */
+    public static final boolean GENERATED_LEXER = Boolean.getBoolean("compiler.lexer.generated");
+
+    /**
+     * 向量化词法分析: 按字节扫描时用 Vector API 一次判定一整个向量的字节, 快速跳过空白符, 标识符与整数常量的游程.
+     * <br>
+     * 只对按字节扫描的输入 (内存映射与流式) 生效, 指定时源文件默认按内存映射读入. 实现位于单独的源码目录 src-vector 中,
+     * 需要以 {@code --add-modules jdk.incubator.vector} 另行编译 (见 src-vector 中的 VectorScanner) 并以同样的参数启动 JVM.
+     * 该模块不可用时此选项为 false; 未编译 src-vector 时回退到逐字节查表的标量扫描
+     */
+    public static final boolean SIMD_LEXER = Boolean.getBoolean("compiler.lexer.simd")
+        && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    //==================================== 语法分析 ========================================//
+    /**
+     * 以编译成稠密 int 矩阵的分析表驱动语法分析, 见 {@link cn.edu.hitsz.compiler.parser.table.CompiledLRTable}
+     */
+    public static final boolean COMPILED_LR_TABLE = Boolean.getBoolean("compiler.parser.compiled");
+
+    /**
+     * 生成专用的语法分析驱动程序: 把分析表翻译为每个状态一个方法的 Java 类, 在内存中编译后作为隐藏类载入,
+     * 见 {@link cn.edu.hitsz.compiler.parser.ParserClassGenerator}. 运行时需要 JDK 的编译器, 不可用时回退到表驱动的程序
+     */
+    public static final boolean GENERATED_PARSER = Boolean.getBoolean("compiler.parser.generated");
+
+    /**
+     * 异步分派观察者: 驱动程序把动作通知发布到环形缓冲区, 各观察者各自在一个线程上消费,
+     * 见 {@link cn.edu.hitsz.compiler.parser.ObserverPipeline}. 流式词法分析会在分析期间向符号表加入条目, 此时该选项为 false
+     */
+    public static final boolean ASYNC_OBSERVERS = Boolean.getBoolean("compiler.parser.async") && !STREAMING_LEXER;
+
+    /**
+     * 异步分派观察者时环形缓冲区的槽位数
+     */
+    public static final int ASYNC_OBSERVER_BUFFER_SIZE = Integer.getInteger("compiler.parser.async.buffer", 4096);
+
+    /**
+     * 记录解析轨迹: 把 shift, reduce, accept 序列与分析前的符号表写入该路径,
+     * 见 {@link cn.edu.hitsz.compiler.parser.TraceRecorder}. 不指定时不记录
+     */
+    public static final String TRACE_RECORD_PATH = System.getProperty("compiler.parser.trace.record");
+
+    /**
+     * 重放解析轨迹: 不再进行词法分析与语法分析, 由该路径下记录的轨迹驱动各观察者,
+     * 见 {@link cn.edu.hitsz.compiler.parser.TraceReplayer}. 各输出文件与实时分析相同
+     */
+    public static final String TRACE_REPLAY_PATH = System.getProperty("compiler.parser.trace.replay");
+
+    /**
+     * 缓存 LR 分析表: 第一次运行时把 CSV 分析表转为二进制文件, 之后内存映射读取, 见 {@link cn.edu.hitsz.compiler.parser.table.LRTableCache}
+     */
+    public static final boolean LR_TABLE_CACHE = Boolean.getBoolean("compiler.parser.cache");
+
+    /**
+     * 使用预先生成的分析表类: 码点, 产生式与分析表都取自 classpath 上的生成类, 不再读取码点文件, 语法文件与分析表,
+     * 见 {@link cn.edu.hitsz.compiler.parser.table.TableClassGenerator}. 生成类不存在时照常读取文件
+     */
+    public static final boolean AOT_LR_TABLE = Boolean.getBoolean("compiler.parser.aot");
+
+    /**
+     * 语句列表改为左递归: 以 {@code S_list -> S_list S Semicolon} 代替 {@code S_list -> S Semicolon S_list}.
+     * <br>
+     * 右递归时所有语句都要留在分析栈上, 直到最后一个分号之后才能自右向左逐个规约 S_list, 栈深与语句条数成正比;
+     * 左递归时每个分号之后立即规约出 S_list, 分析栈与各 Observer 的语义栈深度只取决于单条语句.
+     * 产生式的编号与 grammar.txt 相同, 只有规约顺序不同. 第三方分析表对应的是右递归的语法,
+     * 因此此模式下默认以 LALR(1) 由语法文件构造分析表
+     */
+    public static final boolean LEFT_RECURSIVE_STATEMENTS = Boolean.getBoolean("compiler.parser.leftRecursive");
+
+    /**
+     * 不读取第三方分析表, 而由 grammar.txt 直接构造分析表. 取值为 slr1, lalr1 或 lr1, 不指定时读取 CSV 分析表
+     * (语句列表左递归时默认为 lalr1)
+     */
+    public static final String TABLE_GENERATOR = System.getProperty("compiler.parser.generator",
+        LEFT_RECURSIVE_STATEMENTS ? "lalr1" : null);
+
+    /**
+     * 由 grammar.txt 构造分析表时构造项目集族的线程数, 为 1 时顺序构造
+     */
+    public static final int TABLE_GENERATOR_THREADS = Integer.getInteger("compiler.parser.generator.threads", 1);
+
+    private CompilerOptions() {
+    }
+}
@@ -16,9 +16,10 @@ public final class FilePathConfig {
     public static final String CODING_MAP_PATH = "data/in/coding_map.csv";
 
     /**
-     * 语法文件
+     * 语法文件. 指定 {@link CompilerOptions#LEFT_RECURSIVE_STATEMENTS} 时改用语句列表左递归的版本
      */
-    public final static String GRAMMAR_PATH = "data/in/grammar.txt";
+    public final static String GRAMMAR_PATH = CompilerOptions.LEFT_RECURSIVE_STATEMENTS
+        ? "data/in/grammar_left_recursive.txt" : "data/in/grammar.txt";
 
     /**
      * 第三方工具构造的 LR 分析表
@@ -62,6 +63,11 @@ public final class FilePathConfig {
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * LR 分析表的二进制缓存
+     */
+    public static final String LR1_TABLE_CACHE_PATH = "data/out/LR1_table.bin";
+
     private FilePathConfig() {
     }
 }
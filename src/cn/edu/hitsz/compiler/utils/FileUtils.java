@@ -1,10 +1,14 @@
 package cn.edu.hitsz.compiler.utils;
 
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
@@ -36,6 +40,39 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 以只读方式打开文件通道
+     *
+     * @param path 文件路径
+     * @return 文件通道, 由调用者负责关闭
+     */
+    public static ReadableByteChannel openChannel(String path) {
+        try {
+            return Files.newByteChannel(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以只读方式将整个文件映射到内存, 文件内容不经过解码也不复制到堆上
+     *
+     * @param path 文件路径
+     * @return 映射得到的缓冲区
+     * @throws RuntimeException 文件大于 2GB, 无法用单个缓冲区映射
+     */
+    public static MappedByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RuntimeException("File too large to map: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
     /**
      * 将内容写入指定文件
      *
@@ -0,0 +1,80 @@
+package cn.edu.hitsz.compiler.utils;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 在内存中编译运行时生成的 Java 源码, 供各个代码生成器使用
+ * <br>
+ * 需要运行时带有 JDK 的编译器 (jdk.compiler 模块), 且本项目的类位于 java.class.path 上. 源码中只能有一个类 (不能有嵌套类),
+ * 编译结果一般通过 {@link java.lang.invoke.MethodHandles.Lookup#defineHiddenClass(byte[], boolean, java.lang.invoke.MethodHandles.Lookup.ClassOption...)}
+ * 作为隐藏类载入.
+ */
+public final class SourceCompiler {
+    /**
+     * 编译一个类的源码
+     *
+     * @param className 类的全限定名
+     * @param source    Java 源码
+     * @return 该类的字节码
+     * @throws RuntimeException 没有可用的编译器, 或编译失败
+     */
+    public static byte[] compile(String className, String source) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No system Java compiler available");
+        }
+
+        final var sourceFile = new SimpleJavaFileObject(
+            URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+            JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        final var output = new ByteArrayOutputStream();
+        final var standardManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        final var fileManager = new ForwardingJavaFileManager<JavaFileManager>(standardManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String outputName,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + outputName.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return output;
+                    }
+                };
+            }
+        };
+
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final var options = List.of("-classpath", System.getProperty("java.class.path"), "-nowarn");
+        final var success = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call();
+        if (!success) {
+            final var messages = diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.joining("; "));
+            throw new RuntimeException("Failed to compile generated class " + className + ": " + messages);
+        }
+
+        return output.toByteArray();
+    }
+
+    private SourceCompiler() {
+    }
+}